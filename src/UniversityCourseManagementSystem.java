@@ -1,7 +1,38 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+import java.util.regex.Pattern;
 
 /**
  * This class is responsible for orchestrating a university management system.
@@ -12,6 +43,29 @@ import java.util.Scanner;
  */
 public class UniversityCourseManagementSystem {
 
+    /**
+     * Names of the commands, which cannot be used as names of students,
+     * professors or courses.
+     */
+    private static final Set<String> COMMANDS =
+            Set.of("student", "course", "professor", "enroll", "teach", "exempt", "drop", "export",
+                    "archive", "analyze");
+
+    /**
+     * Names of the course levels, which cannot be used as course names.
+     */
+    private static final Set<String> LEVELS = Set.of("master", "bachelor");
+
+    /**
+     * Pattern of an acceptable student or professor name.
+     */
+    private static final Pattern NAME_PATTERN = Pattern.compile("[a-zA-Z]+");
+
+    /**
+     * Pattern of an acceptable course name.
+     */
+    private static final Pattern COURSE_NAME_PATTERN = Pattern.compile("[a-zA-Z]+(_[a-zA-Z]+)*");
+
     /**
      * This method is the entry point to the university management system.
      * It accepts a series of commands via terminal input. Supported commands are:
@@ -22,9 +76,25 @@ public class UniversityCourseManagementSystem {
      * "drop" - to unregister a student from a course
      * "teach" - to assign a course to a professor
      * "exempt" - to remove a course assignment from a professor
+     * "export" - to write all course rosters and teaching assignments to files
+     * "archive" - to append the state of the current term to an archive
+     * "analyze" - to count enrollments or assignments of every archived term
      * If the command is unrecognized, or if any error occurs during execution of
      * a command, the program will terminate with a corresponding message.
+     * The names of all commands, including "export", "archive" and "analyze",
+     * are rejected as names of students, professors and courses.
+     * Passing "--pipelined" as the first argument runs the commands through
+     * a CommandPipeline, which parses, validates, applies and prints them on
+     * separate threads while keeping the output order of the input.
+     * Passing "--paged" followed by a directory and a number of bytes keeps
+     * the courses, members and their relations in pages in that directory,
+     * with at most that many bytes of pages cached in memory. The store is
+     * saved at exit and restored by the next run instead of the initial data.
+     * The directory must exist and the number of bytes must be positive,
+     * otherwise the program terminates with a usage message.
      *
+     * @see UniversityCourseManagementSystem#runSequential(InputStream, PrintStream, List, List, List)
+     * @see CommandPipeline
      * @see UniversityCourseManagementSystem#course(List, Course)
      * @see UniversityCourseManagementSystem#student(List, Student)
      * @see UniversityCourseManagementSystem#professor(List, Professor)
@@ -32,93 +102,233 @@ public class UniversityCourseManagementSystem {
      * @see UniversityCourseManagementSystem#drop(List, List, int, int)
      * @see UniversityCourseManagementSystem#teach(List, List, int, int)
      * @see UniversityCourseManagementSystem#exempt(List, List, int, int)
+     * @see UniversityCourseManagementSystem#export(List, List, Command)
+     * @see UniversityCourseManagementSystem#archive(List, List, List, Command)
+     * @see UniversityCourseManagementSystem#analyze(Command)
      * @param args commands and inputs needed for them.
      */
     public static void main(String[] args) {
-        ArrayList<Course> courses = new ArrayList<>();
-        ArrayList<Student> students = new ArrayList<>();
-        ArrayList<Professor> professors = new ArrayList<>();
+        List<Course> courses = new ArrayList<>();
+        List<Student> students = new ArrayList<>();
+        List<Professor> professors = new ArrayList<>();
+
+        boolean pipelined = false;
+        boolean restored = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--pipelined")) {
+                pipelined = true;
+            } else if (args[i].equals("--paged")) {
+                if (i + 2 >= args.length) {
+                    exitWithUsage("a directory and a number of bytes are required");
+                }
+                restored = openStore(args[i + 1], args[i + 2]);
+                courses = RelationStore.courses();
+                students = RelationStore.students();
+                professors = RelationStore.professors();
+                i += 2;
+            }
+        }
+        if (!restored) {
+            fillInitialData(courses, students, professors);
+        }
+        if (pipelined) {
+            new CommandPipeline(courses, students, professors).run(System.in, System.out);
+        } else {
+            runSequential(System.in, System.out, courses, students, professors);
+        }
+        System.exit(0);
+    }
 
-        fillInitialData(courses, students, professors);
-        Scanner sc = new Scanner(System.in);
+    /**
+     * Runs the commands read from the input one after another on the calling
+     * thread and prints their messages. Messages are printed together once
+     * a batch of them is collected or no more input is buffered, so
+     * interactive input is not delayed and long input is still streamed.
+     * Returns after the last message or after the message of the command
+     * which terminates the program.
+     *
+     * @param in Stream of the commands
+     * @param out Stream for the messages
+     * @param courses List of courses
+     * @param students List of students
+     * @param professors List of professors
+     */
+    static void runSequential(InputStream in, PrintStream out, List<Course> courses, List<Student> students,
+                              List<Professor> professors) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        Supplier<String> lines = Command.lines(reader);
+        StringBuilder text = new StringBuilder();
+        int messages = 0;
         try {
-            while (sc.hasNextLine()) {
-                String command = sc.nextLine();
-                switch (command) {
-                    case ("course"):
-                        String courseName = sc.nextLine().toLowerCase();
-                        if (checkCourseName(courseName, courses)) {
-                            System.out.println("Wrong inputs");
-                            System.exit(0);
-                        }
-                        String level = sc.nextLine().toUpperCase();
-                        Course currentCourse = new Course(courseName, CourseLevel.valueOf(level));
-                        course(courses, currentCourse);
-                        break;
-                    case ("student"):
-                        String studentName = sc.nextLine().toLowerCase();
-                        if (checkName(studentName)) {
-                            System.out.println("Wrong inputs");
-                            System.exit(0);
-                        }
-                        Student currentStudent = new Student(studentName);
-                        student(students, currentStudent);
-                        break;
-                    case ("professor"):
-                        String professorName = sc.nextLine().toLowerCase();
-                        if (checkName(professorName)) {
-                            System.out.println("Wrong inputs");
-                            System.exit(0);
-                        }
-                        Professor currentProfessor = new Professor(professorName);
-                        professor(professors, currentProfessor);
-                        break;
-                    case ("enroll"):
-                        int enrollMemberId = Integer.parseInt(sc.nextLine());
-                        int enrollCourseId = Integer.parseInt(sc.nextLine());
-                        enroll(courses, students, enrollMemberId, enrollCourseId);
-                        break;
-                    case ("drop"):
-                        int dropMemberId = Integer.parseInt(sc.nextLine());
-                        int dropCourseId = Integer.parseInt(sc.nextLine());
-                        drop(courses, students, dropMemberId, dropCourseId);
-                        break;
-                    case ("teach"):
-                        int teachMemberId = Integer.parseInt(sc.nextLine());
-                        int teachCourseId = Integer.parseInt(sc.nextLine());
-                        teach(courses, professors, teachMemberId, teachCourseId);
-                        break;
-                    case ("exempt"):
-                        int exemptMemberId = Integer.parseInt(sc.nextLine());
-                        int exemptCourseId = Integer.parseInt(sc.nextLine());
-                        exempt(courses, professors, exemptMemberId, exemptCourseId);
-                        break;
-                    default:
-                        System.out.println("Wrong inputs");
-                        System.exit(0);
+            String type;
+            while ((type = lines.get()) != null) {
+                Command command = Command.read(type, lines);
+                validate(command);
+                text.append(execute(command, courses, students, professors)).append(System.lineSeparator());
+                if (++messages == CommandPipeline.BATCH_SIZE || !reader.ready()) {
+                    out.print(text);
+                    out.flush();
+                    text.setLength(0);
+                    messages = 0;
                 }
             }
+        } catch (CommandException exception) {
+            text.append(exception.getMessage()).append(System.lineSeparator());
         } catch (Exception exception) {
-            System.out.println("Wrong inputs");
-            System.exit(0);
+            text.append("Wrong inputs").append(System.lineSeparator());
+        }
+        out.print(text);
+        out.flush();
+    }
+
+    /**
+     * Keeps the courses, members and relations in pages in a directory.
+     * When the program terminates, the store is saved for the next run and
+     * the statistics of the page cache are printed to the error stream.
+     * Terminates the program if the arguments are wrong or the store
+     * cannot be opened.
+     *
+     * @param directoryArgument Directory of the page files
+     * @param budgetArgument Maximum number of bytes of pages cached in memory
+     * @return true if the store of an earlier run was restored
+     */
+    private static boolean openStore(String directoryArgument, String budgetArgument) {
+        Path directory = null;
+        try {
+            directory = Paths.get(directoryArgument);
+        } catch (InvalidPathException exception) {
+            exitWithUsage("\"" + directoryArgument + "\" is not a valid path");
+        }
+        if (!Files.isDirectory(directory)) {
+            exitWithUsage("\"" + directoryArgument + "\" is not an existing directory");
+        }
+        long budget = 0;
+        try {
+            budget = Long.parseLong(budgetArgument);
+        } catch (NumberFormatException exception) {
+            exitWithUsage("\"" + budgetArgument + "\" is not a number of bytes");
+        }
+        if (budget <= 0) {
+            exitWithUsage("the number of bytes must be positive");
+        }
+        boolean restored = false;
+        try {
+            restored = RelationStore.open(directory, budget);
+        } catch (IOException exception) {
+            System.err.println("Paged store cannot be opened: " + exception.getMessage());
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                RelationStore.close();
+            } catch (IOException exception) {
+                System.err.println("Paged store is not saved: " + exception.getMessage());
+            }
+            System.err.println(RelationStore.getStatistics());
+        }));
+        return restored;
+    }
+
+    /**
+     * Prints the usage of the "--paged" argument with the reason it was
+     * rejected to the error stream and terminates the program.
+     *
+     * @param reason Reason the arguments were rejected
+     */
+    private static void exitWithUsage(String reason) {
+        System.err.println("Usage: --paged <directory> <bytes>: " + reason);
+        System.exit(1);
+    }
+
+    /**
+     * Validates the names carried by a command. This check depends only on
+     * the command itself, so it can run apart from the registry state.
+     *
+     * @param command Command to be validated
+     */
+    static void validate(Command command) {
+        if (command.getName() == null) {
+            return;
+        }
+        switch (command.getType()) {
+            case ("course"):
+                command.setInvalidName(checkCourseName(command.getName()));
+                break;
+            case ("student"):
+            case ("professor"):
+                command.setInvalidName(checkName(command.getName()));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Applies a validated command to the registry and returns the message
+     * to be printed. Throws CommandException carrying the message to be
+     * printed before termination if the command cannot be applied.
+     *
+     * @param command Command to be applied
+     * @param courses List of courses
+     * @param students List of students
+     * @param professors List of professors
+     * @return Message describing the result of the command
+     */
+    static String execute(Command command, List<Course> courses, List<Student> students, List<Professor> professors) {
+        if (command.isMalformed()) {
+            throw new CommandException("Wrong inputs");
+        }
+        switch (command.getType()) {
+            case ("course"):
+                checkCourseExists(command.getName(), courses);
+                if (command.hasInvalidName() || command.getLevel() == null) {
+                    throw new CommandException("Wrong inputs");
+                }
+                Course currentCourse = new Course(command.getName(), CourseLevel.valueOf(command.getLevel()));
+                return course(courses, currentCourse);
+            case ("student"):
+                if (command.hasInvalidName()) {
+                    throw new CommandException("Wrong inputs");
+                }
+                return student(students, new Student(command.getName()));
+            case ("professor"):
+                if (command.hasInvalidName()) {
+                    throw new CommandException("Wrong inputs");
+                }
+                return professor(professors, new Professor(command.getName()));
+            case ("enroll"):
+                return enroll(courses, students, command.getMemberId(), command.getCourseId());
+            case ("drop"):
+                return drop(courses, students, command.getMemberId(), command.getCourseId());
+            case ("teach"):
+                return teach(courses, professors, command.getMemberId(), command.getCourseId());
+            case ("exempt"):
+                return exempt(courses, professors, command.getMemberId(), command.getCourseId());
+            case ("export"):
+                return export(courses, professors, command);
+            case ("archive"):
+                return archive(courses, students, professors, command);
+            case ("analyze"):
+                return analyze(command);
+            default:
+                throw new CommandException("Wrong inputs");
         }
-        System.exit(0);
     }
 
     /**
-     * Add course to the courses list or exit the system
+     * Add course to the courses list or terminate the command
      * if the course already exists.
      *
      * @param courses List of courses
      * @param currentCourse Current course to be added
+     * @return Message of the successful operation
      */
-    private static void course(List<Course> courses, Course currentCourse) {
+    private static String course(List<Course> courses, Course currentCourse) {
         if (courses.contains(currentCourse)) {
-            System.out.println("Course exists");
-            System.exit(0);
+            throw new CommandException("Course exists");
         } else {
             courses.add(currentCourse);
-            System.out.println("Added successfully");
+            return "Added successfully";
         }
     }
 
@@ -127,10 +337,11 @@ public class UniversityCourseManagementSystem {
      *
      * @param students List of students
      * @param currentStudent Current student to be added
+     * @return Message of the successful operation
      */
-    private static void student(List<Student> students, Student currentStudent) {
+    private static String student(List<Student> students, Student currentStudent) {
         students.add(currentStudent);
-        System.out.println("Added successfully");
+        return "Added successfully";
     }
 
     /**
@@ -138,50 +349,46 @@ public class UniversityCourseManagementSystem {
      *
      * @param professors List of professors
      * @param currentProfessor Current professor to be added
+     * @return Message of the successful operation
      */
-    private static void professor(List<Professor> professors, Professor currentProfessor) {
+    private static String professor(List<Professor> professors, Professor currentProfessor) {
         professors.add(currentProfessor);
-        System.out.println("Added successfully");
+        return "Added successfully";
     }
 
     /**
-     * Enroll student in a course or display error upon invalid
-     * operation.
+     * Enroll student in a course or terminate the command upon
+     * invalid operation.
      *
      * @param courses List of courses
      * @param students List of students
      * @param enrollMemberId ID of the student to be enrolled
      * @param enrollCourseId ID of the course to enroll the student in
+     * @return Message of the successful operation
      */
-    private static void enroll(List<Course> courses, List<Student> students, int enrollMemberId, int enrollCourseId) {
+    private static String enroll(List<Course> courses, List<Student> students, int enrollMemberId, int enrollCourseId) {
         int enrollId = enrollMemberId;
-        for (int i = 0; i < students.size(); i++) {
-            if (students.get(i).getMemberId() == enrollMemberId) {
-                enrollMemberId = i;
-            }
+        int enrollMemberIndex = indexOfMember(students, enrollMemberId);
+        if (enrollMemberIndex >= 0) {
+            enrollMemberId = enrollMemberIndex;
         }
         if (enrollMemberId == enrollId) {
-            System.out.println("Wrong inputs");
-            System.exit(0);
+            throw new CommandException("Wrong inputs");
         }
         if (courses.get(enrollCourseId - 1).getEnrolledStudents().contains(students.get(enrollMemberId))) {
-            System.out.println("Student is already enrolled in this course");
-            System.exit(0);
+            throw new CommandException("Student is already enrolled in this course");
         } else {
             if (students.get(enrollMemberId).getEnrolledCourses().size()
                     >= students.get(enrollMemberId).getMaxEnrolment()) {
-                System.out.println("Maximum enrollment is reached for the student");
-                System.exit(0);
+                throw new CommandException("Maximum enrollment is reached for the student");
             } else {
                 if (courses.get(enrollCourseId - 1).isFull()) {
-                    System.out.println("Course is full");
-                    System.exit(0);
+                    throw new CommandException("Course is full");
                 } else {
                     if (students.get(enrollMemberId).enroll(courses.get(enrollCourseId - 1))) {
-                        System.out.println("Enrolled successfully");
+                        return "Enrolled successfully";
                     } else {
-                        System.out.println("Wrong inputs");
-                        System.exit(0);
+                        throw new CommandException("Wrong inputs");
                     }
                 }
             }
@@ -189,111 +396,192 @@ public class UniversityCourseManagementSystem {
     }
 
     /**
-     * Drop a student from a course or display an error upon
+     * Drop a student from a course or terminate the command upon
      * invalid operation.
      *
      * @param courses List of courses
      * @param students List of students
      * @param dropMemberId ID of the student to be dropped
      * @param dropCourseId ID of the corresponding course
+     * @return Message of the successful operation
      */
-    private static void drop(List<Course> courses, List<Student> students, int dropMemberId, int dropCourseId) {
+    private static String drop(List<Course> courses, List<Student> students, int dropMemberId, int dropCourseId) {
         int dropId = dropMemberId;
-        for (int i = 0; i < students.size(); i++) {
-            if (students.get(i).getMemberId() == dropMemberId) {
-                dropMemberId = i;
-            }
+        int dropMemberIndex = indexOfMember(students, dropMemberId);
+        if (dropMemberIndex >= 0) {
+            dropMemberId = dropMemberIndex;
         }
         if (dropMemberId == dropId) {
-            System.out.println("Wrong inputs");
-            System.exit(0);
+            throw new CommandException("Wrong inputs");
         }
         if (!courses.get(dropCourseId - 1).getEnrolledStudents().contains(students.get(dropMemberId))) {
-            System.out.println("Student is not enrolled in this course");
-            System.exit(0);
+            throw new CommandException("Student is not enrolled in this course");
         } else {
             if (students.get(dropMemberId).drop(courses.get(dropCourseId - 1))) {
-                System.out.println("Dropped successfully");
+                return "Dropped successfully";
             } else {
-                System.out.println("Wrong inputs");
-                System.exit(0);
+                throw new CommandException("Wrong inputs");
             }
         }
     }
 
     /**
-     * Assign a professor to teach a course or display an
-     * error upon invalid operation.
+     * Assign a professor to teach a course or terminate the
+     * command upon invalid operation.
      *
      * @param courses List of courses
      * @param professors List of professors
      * @param teachMemberId ID of the professor to teach the course
      * @param teachCourseId ID of the corresponding course
+     * @return Message of the successful operation
      */
-    private static void teach(List<Course> courses, List<Professor> professors, int teachMemberId, int teachCourseId) {
+    private static String teach(List<Course> courses, List<Professor> professors, int teachMemberId, int teachCourseId) {
         int teachId = teachMemberId;
-        for (int i = 0; i < professors.size(); i++) {
-            if (professors.get(i).getMemberId() == teachMemberId) {
-                teachMemberId = i;
-            }
+        int teachMemberIndex = indexOfMember(professors, teachMemberId);
+        if (teachMemberIndex >= 0) {
+            teachMemberId = teachMemberIndex;
         }
         if (teachMemberId == teachId) {
-            System.out.println("Wrong inputs");
-            System.exit(0);
+            throw new CommandException("Wrong inputs");
         }
         if (professors.get(teachMemberId).getAssignedCourses().size() >= professors.get(teachMemberId).getMaxLoad()) {
-            System.out.println("Professor's load is complete");
-            System.exit(0);
+            throw new CommandException("Professor's load is complete");
         } else {
             if (professors.get(teachMemberId).getAssignedCourses().contains(courses.get(teachCourseId - 1))) {
-                System.out.println("Professor is already teaching this course");
-                System.exit(0);
+                throw new CommandException("Professor is already teaching this course");
             } else {
                 if (professors.get(teachMemberId).teach(courses.get(teachCourseId - 1))) {
-                    System.out.println("Professor is successfully assigned to teach this course");
+                    return "Professor is successfully assigned to teach this course";
                 } else {
-                    System.out.println("Wrong inputs");
-                    System.exit(0);
+                    throw new CommandException("Wrong inputs");
                 }
             }
         }
     }
 
     /**
-     * Exempt a professor from a course or display an error
+     * Exempt a professor from a course or terminate the command
      * upon invalid operation.
      *
      * @param courses List of courses
      * @param professors List of professors
      * @param memberId ID of the professor to be exempted
      * @param courseId ID of the corresponding course
+     * @return Message of the successful operation
      */
-    private static void exempt(List<Course> courses, List<Professor> professors, int memberId, int courseId) {
+    private static String exempt(List<Course> courses, List<Professor> professors, int memberId, int courseId) {
         int exemptCourseId = courseId;
         int exemptMemberId = memberId;
         int exemptId = exemptMemberId;
-        for (int i = 0; i < professors.size(); i++) {
-            if (professors.get(i).getMemberId() == exemptMemberId) {
-                exemptMemberId = i;
-            }
+        int exemptMemberIndex = indexOfMember(professors, exemptMemberId);
+        if (exemptMemberIndex >= 0) {
+            exemptMemberId = exemptMemberIndex;
         }
         if (exemptMemberId == exemptId) {
-            System.out.println("Wrong inputs");
-            System.exit(0);
+            throw new CommandException("Wrong inputs");
         }
         if (!professors.get(exemptMemberId).getAssignedCourses().contains(courses.get(exemptCourseId - 1))) {
-            System.out.println("Professor is not teaching this course");
-            System.exit(0);
+            throw new CommandException("Professor is not teaching this course");
         } else {
             if (professors.get(exemptMemberId).exempt(courses.get(exemptCourseId - 1))) {
-                System.out.println("Professor is exempted");
+                return "Professor is exempted";
             } else {
-                System.out.println("Wrong inputs");
-                System.exit(0);
+                throw new CommandException("Wrong inputs");
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the last member with the given ID in a list.
+     * Paged lists are searched by ID without restoring the members.
+     *
+     * @param members List of students or professors
+     * @param memberId ID of the member
+     * @return Index of the member, or -1 if there is none
+     */
+    private static int indexOfMember(List<? extends UniversityMember> members, int memberId) {
+        if (members instanceof PagedEntityList) {
+            return ((PagedEntityList<?>) members).lastIndexOfId(memberId);
+        }
+        int index = -1;
+        for (int i = 0; i < members.size(); i++) {
+            if (members.get(i).getMemberId() == memberId) {
+                index = i;
             }
         }
+        return index;
+    }
+
+    /**
+     * Export the rosters of all courses and the courses assigned to all
+     * professors to files or terminate the command upon invalid operation.
+     *
+     * @param courses List of courses
+     * @param professors List of professors
+     * @param command Command carrying the format, the path and the number of shards
+     * @return Message of the successful operation
+     */
+    private static String export(List<Course> courses, List<Professor> professors, Command command) {
+        ExportFormat format = ExportFormat.valueOf(command.getFormat());
+        if (command.getShards() < 1 || command.getShards() > RegistryExporter.MAX_SHARDS) {
+            throw new CommandException("Wrong inputs");
+        }
+        try {
+            new RegistryExporter(format).export(courses, professors, Paths.get(command.getPath()), command.getShards());
+        } catch (IOException exception) {
+            throw new CommandException("Wrong inputs");
+        }
+        return "Exported successfully";
+    }
+
+    /**
+     * Append the courses, enrollments and teaching assignments of the
+     * current term to an archive or terminate the command upon invalid
+     * operation.
+     *
+     * @param courses List of courses
+     * @param students List of students
+     * @param professors List of professors
+     * @param command Command carrying the path of the archive
+     * @return Message of the successful operation
+     */
+    private static String archive(List<Course> courses, List<Student> students, List<Professor> professors,
+                                  Command command) {
+        try {
+            TermArchive.append(Paths.get(command.getPath()), courses, students, professors);
+        } catch (IOException exception) {
+            throw new CommandException("Wrong inputs");
+        }
+        return "Archived successfully";
     }
 
+    /**
+     * Count the enrollments per course, the assignments per professor or the
+     * enrollments per course level in every term of an archive, or terminate
+     * the command upon invalid operation.
+     *
+     * @param command Command carrying the report and the path of the archive
+     * @return Lines "term,key,count" for every non-zero count, where the key
+     *     of a professor is "ID,name"
+     */
+    private static String analyze(Command command) {
+        TermArchive archive;
+        try {
+            archive = TermArchive.load(Paths.get(command.getPath()));
+        } catch (IOException exception) {
+            throw new CommandException("Wrong inputs");
+        }
+        switch (command.getReport()) {
+            case ("demand"):
+                return archive.reportDemand();
+            case ("load"):
+                return archive.reportLoad();
+            case ("levels"):
+                return archive.reportLevels();
+            default:
+                throw new CommandException("Wrong inputs");
+        }
+    }
 
     /**
      * Fill the lists of courses, students, and professors
@@ -343,44 +631,41 @@ public class UniversityCourseManagementSystem {
     }
 
     /**
-     * Checks if the name is not equivalent to any commands
-     * and contains only alphabetical characters.
+     * Checks if the name is not equivalent to any commands,
+     * contains only alphabetical characters and fits the paged store.
      *
      * @param name The name to be checked
      * @return boolean Return false if name is acceptable
      */
     public static boolean checkName(String name) {
-        ArrayList<String> commands = new ArrayList<>();
-        commands.addAll(Arrays.asList("student", "course", "professor", "enroll", "teach", "exempt", "drop"));
-        return commands.contains(name) || !name.matches("[a-zA-Z]+");
+        return COMMANDS.contains(name) || !NAME_PATTERN.matcher(name).matches() || !RelationStore.canStore(name);
     }
 
     /**
      * Checks if the course name is not equivalent to any
-     * commands and does not exist in the course list.
+     * commands or course levels, is well-formed and fits the paged store.
      *
      * @param name The name to be checked
-     * @param courses List of courses
      * @return boolean Return false if name is acceptable
      */
-    public static boolean checkCourseName(String name, ArrayList<Course> courses) {
+    public static boolean checkCourseName(String name) {
+        return COMMANDS.contains(name) || LEVELS.contains(name) || !COURSE_NAME_PATTERN.matcher(name).matches()
+                || !RelationStore.canStore(name);
+    }
+
+    /**
+     * Terminates the command if a course with the given name
+     * already exists in the course list.
+     *
+     * @param name The name to be checked
+     * @param courses List of courses
+     */
+    public static void checkCourseExists(String name, List<Course> courses) {
         for (Course course : courses) {
             if (course.getCourseName().equals(name)) {
-                System.out.println("Course exists");
-                System.exit(0);
-            }
-        }
-        ArrayList<String> commands = new ArrayList<>();
-        commands.add("student");
-        commands.add("course");
-        commands.add("professor");
-        commands.add("enroll");
-        commands.add("teach");
-        commands.add("exempt");
-        commands.add("drop");
-        commands.add("master");
-        commands.add("bachelor");
-        return commands.contains(name) || !name.matches("[a-zA-Z]+(_[a-zA-Z]+)*");
+                throw new CommandException("Course exists");
+            }
+        }
     }
 }
 
@@ -393,12 +678,12 @@ class Student extends UniversityMember implements Enrollable {
     /**
      * Maximum number of courses a student can enroll.
      */
-    private static final int MAX_ENROLMENT = 3;
+    static final int MAX_ENROLMENT = 3;
 
     /**
      * A list of courses the student is enrolled in.
      */
-    private final List<Course> enrolledCourses = new ArrayList<>();
+    private final List<Course> enrolledCourses;
 
     /**
      * Constructor of the Student class.
@@ -407,6 +692,18 @@ class Student extends UniversityMember implements Enrollable {
      */
     Student(String memberName) {
         super(++numberOfMembers, memberName);
+        this.enrolledCourses = RelationStore.enrollments(this);
+    }
+
+    /**
+     * Constructor restoring a stored student without creating a new member.
+     *
+     * @param memberId ID of the student
+     * @param memberName Name of the student
+     */
+    Student(int memberId, String memberName) {
+        super(memberId, memberName);
+        this.enrolledCourses = RelationStore.enrollments(this);
     }
 
     /**
@@ -471,12 +768,12 @@ class Course {
     /**
      * The capacity of each course.
      */
-    private final static int CAPACITY = 3;
+    final static int CAPACITY = 3;
 
     /**
      * Number of collected courses.
      */
-    private static int numberOfCourses = 0;
+    static int numberOfCourses = 0;
 
     /**
      * A unique identity number for course.
@@ -491,7 +788,7 @@ class Course {
     /**
      * List of students who have enrolled in the course.
      */
-    private final List<Student> enrolledStudents = new ArrayList<>();
+    private final List<Student> enrolledStudents;
 
     /**
      * Level of the course.
@@ -517,6 +814,21 @@ class Course {
         setCourseName(name);
         this.courseLevel = level;
         this.courseID = ++numberOfCourses;
+        this.enrolledStudents = RelationStore.roster(this);
+    }
+
+    /**
+     * Constructor restoring a stored course without creating a new course.
+     *
+     * @param id ID of the course
+     * @param name Name of the course
+     * @param level Level of the course: BACHELOR or MASTER
+     */
+    Course(int id, String name, CourseLevel level) {
+        setCourseName(name);
+        this.courseLevel = level;
+        this.courseID = id;
+        this.enrolledStudents = RelationStore.roster(this);
     }
 
     /**
@@ -560,6 +872,23 @@ class Course {
     public String getCourseName() {
         return this.courseName;
     }
+
+    /**
+     * Courses are equal if they have the same ID, since a stored
+     * course can be restored more than once.
+     *
+     * @param other Object to be compared
+     * @return true if other is a course with the same ID
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Course && ((Course) other).courseID == courseID;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(courseID);
+    }
 }
 
 /**
@@ -571,12 +900,12 @@ class Professor extends UniversityMember {
     /**
      * Maximum number of courses a professor can teach.
      */
-    private final static int MAX_LOAD = 2;
+    final static int MAX_LOAD = 2;
 
     /**
      * A List of courses assigned to a professor.
      */
-    private final List<Course> assignedCourses = new ArrayList<>();
+    private final List<Course> assignedCourses;
 
     /**
      * Constructor of the Professor class.
@@ -585,6 +914,18 @@ class Professor extends UniversityMember {
      */
     Professor(String memberName) {
         super(++numberOfMembers, memberName);
+        this.assignedCourses = RelationStore.assignments(this);
+    }
+
+    /**
+     * Constructor restoring a stored professor without creating a new member.
+     *
+     * @param memberId ID of the professor
+     * @param memberName Name of the professor
+     */
+    Professor(int memberId, String memberName) {
+        super(memberId, memberName);
+        this.assignedCourses = RelationStore.assignments(this);
     }
 
     /**
@@ -686,6 +1027,23 @@ abstract class UniversityMember {
 
     }
 
+    /**
+     * Members are equal if they are of the same class and have the same ID,
+     * since a stored member can be restored more than once.
+     *
+     * @param other Object to be compared
+     * @return true if other is a member of the same class with the same ID
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other != null && other.getClass() == getClass() && ((UniversityMember) other).memberId == memberId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(memberId);
+    }
+
 
 }
 
@@ -726,3 +1084,2697 @@ interface Enrollable {
      */
     boolean enroll(Course course);
 }
+
+/**
+ * Command class holds a single command read from the input together
+ * with its arguments and, once applied, the message to be printed.
+ */
+class Command {
+
+    /**
+     * Type of the command, e.g. "course" or "enroll".
+     */
+    private final String type;
+
+    /**
+     * Name of the course, student or professor to be added.
+     */
+    private String name;
+
+    /**
+     * Level of the course to be added.
+     */
+    private String level;
+
+    /**
+     * ID of the member the command refers to.
+     */
+    private int memberId;
+
+    /**
+     * ID of the course the command refers to.
+     */
+    private int courseId;
+
+    /**
+     * Format of the files to be exported.
+     */
+    private String format;
+
+    /**
+     * Path of the files to be exported.
+     */
+    private String path;
+
+    /**
+     * Number of files the export is split into.
+     */
+    private int shards;
+
+    /**
+     * Name of the report to be computed from an archive.
+     */
+    private String report;
+
+    /**
+     * Whether the command is unrecognized or its arguments could not be read.
+     */
+    private boolean malformed;
+
+    /**
+     * Whether the name carried by the command is not acceptable.
+     */
+    private boolean invalidName;
+
+    /**
+     * Message produced by applying the command.
+     */
+    private String output;
+
+    /**
+     * Whether the program terminates after printing the output.
+     */
+    private boolean terminal;
+
+    /**
+     * Constructor of the Command class.
+     *
+     * @param type Type of the command
+     */
+    Command(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Creates a malformed command standing for input which failed to be
+     * read or validated. Applying it terminates the program with
+     * "Wrong inputs".
+     *
+     * @return Malformed command
+     */
+    static Command failed() {
+        Command command = new Command("");
+        command.malformed = true;
+        return command;
+    }
+
+    /**
+     * Reads the arguments of a command of the given type. Lines are
+     * taken from the supplier, which returns null at the end of input.
+     *
+     * @param type Type of the command
+     * @param lines Supplier of the input lines
+     * @return Command with its arguments
+     */
+    static Command read(String type, Supplier<String> lines) {
+        Command command = new Command(type);
+        switch (type) {
+            case ("course"):
+                String courseName = lines.get();
+                if (courseName == null) {
+                    command.malformed = true;
+                    break;
+                }
+                command.name = courseName.toLowerCase();
+                String courseLevel = lines.get();
+                command.level = courseLevel == null ? null : courseLevel.toUpperCase();
+                break;
+            case ("student"):
+            case ("professor"):
+                String memberName = lines.get();
+                if (memberName == null) {
+                    command.malformed = true;
+                    break;
+                }
+                command.name = memberName.toLowerCase();
+                break;
+            case ("enroll"):
+            case ("drop"):
+            case ("teach"):
+            case ("exempt"):
+                try {
+                    command.memberId = Integer.parseInt(lines.get());
+                    command.courseId = Integer.parseInt(lines.get());
+                } catch (NumberFormatException exception) {
+                    command.malformed = true;
+                }
+                break;
+            case ("export"):
+                String exportFormat = lines.get();
+                String exportPath = lines.get();
+                if (exportFormat == null || exportPath == null) {
+                    command.malformed = true;
+                    break;
+                }
+                command.format = exportFormat.toUpperCase();
+                command.path = exportPath;
+                try {
+                    command.shards = Integer.parseInt(lines.get());
+                } catch (NumberFormatException exception) {
+                    command.malformed = true;
+                }
+                break;
+            case ("archive"):
+                command.path = lines.get();
+                command.malformed = command.path == null;
+                break;
+            case ("analyze"):
+                String report = lines.get();
+                command.path = lines.get();
+                if (report == null || command.path == null) {
+                    command.malformed = true;
+                    break;
+                }
+                command.report = report.toLowerCase();
+                break;
+            default:
+                command.malformed = true;
+        }
+        return command;
+    }
+
+    /**
+     * Returns a supplier of the lines of a reader, which returns null at the
+     * end of input. A failed read ends the input, as it does for a Scanner.
+     *
+     * @param reader Reader of the input
+     * @return Supplier of the input lines
+     */
+    static Supplier<String> lines(BufferedReader reader) {
+        return () -> {
+            try {
+                return reader.readLine();
+            } catch (IOException exception) {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Getter for the type of the command.
+     * @return type
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Getter for the name carried by the command.
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for the course level carried by the command.
+     * @return level
+     */
+    public String getLevel() {
+        return level;
+    }
+
+    /**
+     * Getter for the member ID carried by the command.
+     * @return memberId
+     */
+    public int getMemberId() {
+        return memberId;
+    }
+
+    /**
+     * Getter for the course ID carried by the command.
+     * @return courseId
+     */
+    public int getCourseId() {
+        return courseId;
+    }
+
+    /**
+     * Getter for the export format carried by the command.
+     * @return format
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * Getter for the export path carried by the command.
+     * @return path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Getter for the number of export shards carried by the command.
+     * @return shards
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * Getter for the report carried by the command.
+     * @return report
+     */
+    public String getReport() {
+        return report;
+    }
+
+    /**
+     * Checks if the command is unrecognized or its arguments could not be read.
+     * @return malformed
+     */
+    public boolean isMalformed() {
+        return malformed;
+    }
+
+    /**
+     * Checks if the name carried by the command is not acceptable.
+     * @return invalidName
+     */
+    public boolean hasInvalidName() {
+        return invalidName;
+    }
+
+    /**
+     * Setter for the result of the name validation.
+     * @param invalidName Whether the name is not acceptable
+     */
+    public void setInvalidName(boolean invalidName) {
+        this.invalidName = invalidName;
+    }
+
+    /**
+     * Getter for the message produced by applying the command.
+     * @return output
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * Checks if the program terminates after printing the output.
+     * @return terminal
+     */
+    public boolean isTerminal() {
+        return terminal;
+    }
+
+    /**
+     * Setter for the result of applying the command.
+     *
+     * @param output Message to be printed
+     * @param terminal Whether the program terminates after printing it
+     */
+    public void setResult(String output, boolean terminal) {
+        this.output = output;
+        this.terminal = terminal;
+    }
+}
+
+/**
+ * Exception thrown when a command cannot be applied. Its message is
+ * printed before the program terminates.
+ */
+class CommandException extends RuntimeException {
+
+    /**
+     * Version of the serialized form of the class.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor of the CommandException class.
+     *
+     * @param message Message to be printed
+     */
+    CommandException(String message) {
+        super(message);
+    }
+}
+
+/**
+ * CommandPipeline runs the commands in four stages: parse, validate, apply
+ * and emit. Each stage has its own thread and hands batches of commands to
+ * the next one through bounded lock-free queues. Only the apply stage
+ * touches the courses, students and professors, and the emit stage prints
+ * the messages in the order the commands were read.
+ */
+class CommandPipeline {
+
+    /**
+     * Maximum number of commands handed to the next stage at once.
+     */
+    static final int BATCH_SIZE = 256;
+
+    /**
+     * Number of batches each queue can hold.
+     */
+    private static final int QUEUE_CAPACITY = 64;
+
+    /**
+     * Batch marking the end of the commands.
+     */
+    private static final Command[] END = new Command[0];
+
+    /**
+     * List of courses.
+     */
+    private final List<Course> courses;
+
+    /**
+     * List of students.
+     */
+    private final List<Student> students;
+
+    /**
+     * List of professors.
+     */
+    private final List<Professor> professors;
+
+    /**
+     * Batches passed from the parse stage to the validate stage.
+     */
+    private final SpscQueue<Command[]> parsed = new SpscQueue<>(QUEUE_CAPACITY);
+
+    /**
+     * Batches passed from the validate stage to the apply stage.
+     */
+    private final SpscQueue<Command[]> validated = new SpscQueue<>(QUEUE_CAPACITY);
+
+    /**
+     * Batches passed from the apply stage to the emit stage.
+     */
+    private final SpscQueue<Command[]> applied = new SpscQueue<>(QUEUE_CAPACITY);
+
+    /**
+     * Constructor of the CommandPipeline class.
+     *
+     * @param courses List of courses
+     * @param students List of students
+     * @param professors List of professors
+     */
+    CommandPipeline(List<Course> courses, List<Student> students, List<Professor> professors) {
+        this.courses = courses;
+        this.students = students;
+        this.professors = professors;
+    }
+
+    /**
+     * Runs the commands read from the input and prints their messages.
+     * Returns after the last message or after the message of the command
+     * which terminates the program.
+     *
+     * @param in Stream of the commands
+     * @param out Stream for the messages
+     */
+    public void run(InputStream in, PrintStream out) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        startStage("parse", () -> parse(reader));
+        startStage("validate", this::validate);
+        startStage("apply", this::apply);
+        emit(out);
+    }
+
+    /**
+     * Starts a stage on its own daemon thread.
+     *
+     * @param name Name of the stage
+     * @param stage Body of the stage
+     */
+    private static void startStage(String name, Runnable stage) {
+        Thread thread = new Thread(stage, "pipeline-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Reads the commands. A batch is handed over once it is full or
+     * no more input is buffered, so interactive input is not delayed.
+     * If reading fails with anything but an IOException, a failed command
+     * is handed over last.
+     *
+     * @param reader Reader of the input
+     */
+    private void parse(BufferedReader reader) {
+        Supplier<String> lines = Command.lines(reader);
+        Command[] batch = new Command[BATCH_SIZE];
+        int size = 0;
+        boolean failed = false;
+        try {
+            String type;
+            while ((type = lines.get()) != null) {
+                Command command = Command.read(type, lines);
+                batch[size++] = command;
+                if (command.isMalformed()) {
+                    break;
+                }
+                if (size == BATCH_SIZE || !reader.ready()) {
+                    parsed.put(Arrays.copyOf(batch, size));
+                    size = 0;
+                }
+            }
+        } catch (IOException exception) {
+            // A failed read ends the input, as it does for Command.lines.
+        } catch (Throwable exception) {
+            failed = true;
+        }
+        if (size > 0) {
+            parsed.put(Arrays.copyOf(batch, size));
+        }
+        if (failed) {
+            parsed.put(new Command[] {Command.failed()});
+        }
+        parsed.put(END);
+    }
+
+    /**
+     * Validates the names carried by the commands. A command which fails
+     * to be validated is replaced by a failed command.
+     */
+    private void validate() {
+        Command[] batch;
+        while ((batch = parsed.take()) != END) {
+            for (int i = 0; i < batch.length; i++) {
+                try {
+                    UniversityCourseManagementSystem.validate(batch[i]);
+                } catch (Throwable exception) {
+                    batch[i] = Command.failed();
+                }
+            }
+            validated.put(batch);
+        }
+        validated.put(END);
+    }
+
+    /**
+     * Applies the commands to the registry. Stops after the first
+     * command which terminates the program. Any failure of a command,
+     * including an Error, terminates the program with "Wrong inputs".
+     */
+    private void apply() {
+        Command[] batch;
+        while ((batch = validated.take()) != END) {
+            for (Command command : batch) {
+                try {
+                    command.setResult(UniversityCourseManagementSystem.execute(command, courses, students, professors),
+                            false);
+                } catch (CommandException exception) {
+                    command.setResult(exception.getMessage(), true);
+                } catch (Throwable exception) {
+                    command.setResult("Wrong inputs", true);
+                }
+                if (command.isTerminal()) {
+                    applied.put(batch);
+                    applied.put(END);
+                    return;
+                }
+            }
+            applied.put(batch);
+        }
+        applied.put(END);
+    }
+
+    /**
+     * Prints the messages of the commands, one batch at a time.
+     *
+     * @param out Stream for the messages
+     */
+    private void emit(PrintStream out) {
+        StringBuilder text = new StringBuilder();
+        Command[] batch;
+        while ((batch = applied.take()) != END) {
+            for (Command command : batch) {
+                text.append(command.getOutput()).append(System.lineSeparator());
+                if (command.isTerminal()) {
+                    break;
+                }
+            }
+            out.print(text);
+            out.flush();
+            text.setLength(0);
+        }
+    }
+}
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one
+ * consumer thread. Blocking operations spin briefly and then park.
+ *
+ * @param <T> Type of the elements
+ */
+class SpscQueue<T> {
+
+    /**
+     * Number of spins before a waiting thread starts parking.
+     */
+    private static final int SPINS = 1000;
+
+    /**
+     * Time a waiting thread parks for, in nanoseconds.
+     */
+    private static final long PARK_NANOS = 50_000;
+
+    /**
+     * Ring buffer holding the elements.
+     */
+    private final Object[] buffer;
+
+    /**
+     * Mask turning a position into an index of the buffer.
+     */
+    private final int mask;
+
+    /**
+     * Position of the next element to be taken.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Position of the next element to be put.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Constructor of the SpscQueue class.
+     *
+     * @param capacity Capacity of the queue, must be a power of two
+     */
+    SpscQueue(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.buffer = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Puts an element if the queue is not full.
+     *
+     * @param element Element to be put
+     * @return true if the element was put, false if the queue is full
+     */
+    public boolean offer(T element) {
+        long position = tail.get();
+        if (position - head.get() == buffer.length) {
+            return false;
+        }
+        buffer[(int) position & mask] = element;
+        tail.lazySet(position + 1);
+        return true;
+    }
+
+    /**
+     * Takes an element if the queue is not empty.
+     *
+     * @return The element, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long position = head.get();
+        if (position == tail.get()) {
+            return null;
+        }
+        int index = (int) position & mask;
+        T element = (T) buffer[index];
+        buffer[index] = null;
+        head.lazySet(position + 1);
+        return element;
+    }
+
+    /**
+     * Puts an element, waiting while the queue is full.
+     *
+     * @param element Element to be put
+     */
+    public void put(T element) {
+        for (int attempt = 0; !offer(element); attempt++) {
+            idle(attempt);
+        }
+    }
+
+    /**
+     * Takes an element, waiting while the queue is empty.
+     *
+     * @return The element
+     */
+    public T take() {
+        T element;
+        for (int attempt = 0; (element = poll()) == null; attempt++) {
+            idle(attempt);
+        }
+        return element;
+    }
+
+    /**
+     * Waits before the next attempt.
+     *
+     * @param attempt Number of failed attempts so far
+     */
+    private static void idle(int attempt) {
+        if (attempt < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
+
+/**
+ * Enum representing formats of the exported files: CSV, BINARY.
+ */
+enum ExportFormat {
+
+    /**
+     * Text rows "relation,course_id,course_name,member_id,member_name".
+     */
+    CSV,
+
+    /**
+     * Fixed-size records of a relation byte, a course ID and a member ID.
+     */
+    BINARY;
+}
+
+/**
+ * RegistryExporter writes the rosters of all courses and the courses
+ * assigned to all professors to files. Records are encoded straight into
+ * direct buffers reused between exports and written to a FileChannel, so
+ * memory usage does not depend on the size of the registry. The export can
+ * be split into shards, each written by its own thread to its own file.
+ */
+class RegistryExporter {
+
+    /**
+     * Maximum number of shards an export can be split into.
+     */
+    static final int MAX_SHARDS = 64;
+
+    /**
+     * Size of the buffer of each shard.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Header of a CSV file.
+     */
+    private static final String CSV_HEADER = "relation,course_id,course_name,member_id,member_name\n";
+
+    /**
+     * Relation byte of a roster record in a binary file.
+     */
+    private static final byte ROSTER = 0;
+
+    /**
+     * Relation byte of a teaching record in a binary file.
+     */
+    private static final byte TEACHING = 1;
+
+    /**
+     * Buffers of the shards, allocated on first use. Commands are applied
+     * one at a time, so a buffer is never used by two exports at once.
+     */
+    private static final ByteBuffer[] BUFFERS = new ByteBuffer[MAX_SHARDS];
+
+    /**
+     * Format of the exported files.
+     */
+    private final ExportFormat format;
+
+    /**
+     * Constructor of the RegistryExporter class.
+     *
+     * @param format Format of the exported files
+     */
+    RegistryExporter(ExportFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Exports the registry. A single shard is written to the path itself,
+     * otherwise shard i is written to the path with ".i" appended. All shard
+     * threads are joined before the first failure of a shard is rethrown, so
+     * a failed shard fails the export as it does with a single shard.
+     *
+     * @param courses List of courses
+     * @param professors List of professors
+     * @param path Path of the exported file
+     * @param shards Number of shards
+     * @throws IOException if a file cannot be written
+     */
+    public void export(List<Course> courses, List<Professor> professors, Path path, int shards) throws IOException {
+        if (shards == 1) {
+            exportShard(courses, professors, 0, 1, path);
+            return;
+        }
+        Thread[] threads = new Thread[shards];
+        Throwable[] failures = new Throwable[shards];
+        for (int i = 0; i < shards; i++) {
+            int shard = i;
+            Path shardPath = path.resolveSibling(path.getFileName() + "." + shard);
+            threads[i] = new Thread(() -> {
+                try {
+                    exportShard(courses, professors, shard, shards, shardPath);
+                } catch (Throwable exception) {
+                    failures[shard] = exception;
+                }
+            }, "export-" + shard);
+            threads[i].start();
+        }
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException exception) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export is interrupted");
+        }
+        for (Throwable failure : failures) {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new IOException(failure);
+            }
+        }
+    }
+
+    /**
+     * Exports every shards-th course and professor starting from the shard index.
+     *
+     * @param courses List of courses
+     * @param professors List of professors
+     * @param shard Index of the shard
+     * @param shards Number of shards
+     * @param path Path of the shard file
+     * @throws IOException if the file cannot be written
+     */
+    private void exportShard(List<Course> courses, List<Professor> professors, int shard, int shards, Path path)
+            throws IOException {
+        if (BUFFERS[shard] == null) {
+            BUFFERS[shard] = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        ByteBuffer buffer = BUFFERS[shard];
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (format == ExportFormat.CSV) {
+                putText(channel, buffer, CSV_HEADER);
+            }
+            for (int i = shard; i < courses.size(); i += shards) {
+                Course course = courses.get(i);
+                for (Student student : course.getEnrolledStudents()) {
+                    putRecord(channel, buffer, ROSTER, course, student);
+                }
+            }
+            for (int i = shard; i < professors.size(); i += shards) {
+                Professor professor = professors.get(i);
+                for (Course course : professor.getAssignedCourses()) {
+                    putRecord(channel, buffer, TEACHING, course, professor);
+                }
+            }
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * Encodes a record into the buffer.
+     *
+     * @param channel Channel the buffer is drained to
+     * @param buffer Buffer of the shard
+     * @param relation ROSTER or TEACHING
+     * @param course Course of the record
+     * @param member Member of the record
+     * @throws IOException if the file cannot be written
+     */
+    private void putRecord(FileChannel channel, ByteBuffer buffer, byte relation, Course course,
+                           UniversityMember member) throws IOException {
+        if (format == ExportFormat.BINARY) {
+            reserve(channel, buffer, 9);
+            buffer.put(relation).putInt(course.getCourseID()).putInt(member.getMemberId());
+            return;
+        }
+        putText(channel, buffer, relation == ROSTER ? "roster," : "teaching,");
+        putNumber(channel, buffer, course.getCourseID());
+        putText(channel, buffer, ",");
+        putText(channel, buffer, course.getCourseName());
+        putText(channel, buffer, ",");
+        putNumber(channel, buffer, member.getMemberId());
+        putText(channel, buffer, ",");
+        putText(channel, buffer, member.getMemberName());
+        putText(channel, buffer, "\n");
+    }
+
+    /**
+     * Encodes a text into the buffer. Names are checked to be alphabetical,
+     * so every other character is replaced with '?'.
+     *
+     * @param channel Channel the buffer is drained to
+     * @param buffer Buffer of the shard
+     * @param text Text to be encoded
+     * @throws IOException if the file cannot be written
+     */
+    private static void putText(FileChannel channel, ByteBuffer buffer, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            if (!buffer.hasRemaining()) {
+                drain(channel, buffer);
+            }
+            char symbol = text.charAt(i);
+            buffer.put(symbol < 0x80 ? (byte) symbol : (byte) '?');
+        }
+    }
+
+    /**
+     * Encodes a number in decimal into the buffer.
+     *
+     * @param channel Channel the buffer is drained to
+     * @param buffer Buffer of the shard
+     * @param number Number to be encoded
+     * @throws IOException if the file cannot be written
+     */
+    private static void putNumber(FileChannel channel, ByteBuffer buffer, int number) throws IOException {
+        reserve(channel, buffer, 11);
+        long value = number;
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor * 10 <= value) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * Drains the buffer if it has less space than required.
+     *
+     * @param channel Channel the buffer is drained to
+     * @param buffer Buffer of the shard
+     * @param size Number of bytes required
+     * @throws IOException if the file cannot be written
+     */
+    private static void reserve(FileChannel channel, ByteBuffer buffer, int size) throws IOException {
+        if (buffer.remaining() < size) {
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * Writes the content of the buffer to the channel and clears it.
+     *
+     * @param channel Channel the buffer is drained to
+     * @param buffer Buffer of the shard
+     * @throws IOException if the file cannot be written
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
+
+/**
+ * RelationStore creates the lists of courses, students and professors and
+ * the lists of the relations between them: course rosters, enrolled courses
+ * of students and assigned courses of professors. By default they are plain
+ * lists in memory. Once the store is opened, every course and member is a
+ * fixed-size record in pages on disk, the lists are views of these pages,
+ * and courses and members are restored as short-lived objects when read.
+ * Only the pages cached by the RecordPager stay in memory, and the store
+ * is saved at exit and restored by the next run.
+ */
+class RelationStore {
+
+    /**
+     * Maximum length of a stored name. Names are alphabetical, so each
+     * character is stored in a byte.
+     */
+    static final int MAX_NAME_LENGTH = 32;
+
+    /**
+     * Table of course records: level + 1, name length and name.
+     */
+    static final int COURSES = 0;
+
+    /**
+     * Table of member records: kind, name length and name.
+     */
+    static final int MEMBERS = 1;
+
+    /**
+     * Table of the course IDs in the order of the course list.
+     */
+    static final int COURSE_ORDER = 2;
+
+    /**
+     * Table of the member IDs in the order of the student list.
+     */
+    static final int STUDENT_ORDER = 3;
+
+    /**
+     * Table of the member IDs in the order of the professor list.
+     */
+    static final int PROFESSOR_ORDER = 4;
+
+    /**
+     * Relation from a course to the IDs of its enrolled students.
+     */
+    static final int ROSTER = 5;
+
+    /**
+     * Relation from a student to the IDs of its enrolled courses.
+     */
+    static final int ENROLLMENT = 6;
+
+    /**
+     * Relation from a professor to the IDs of its assigned courses.
+     */
+    static final int TEACHING = 7;
+
+    /**
+     * Names of the page files, indexed by table.
+     */
+    private static final String[] FILE_NAMES = {"courses.pages", "members.pages", "course-order.pages",
+        "student-order.pages", "professor-order.pages", "roster.pages", "enrollment.pages", "teaching.pages"};
+
+    /**
+     * Name of the file holding the counters and list sizes of a saved store.
+     */
+    private static final String META_FILE = "store.meta";
+
+    /**
+     * Kind of a member record of a student.
+     */
+    private static final int STUDENT = 1;
+
+    /**
+     * Kind of a member record of a professor.
+     */
+    private static final int PROFESSOR = 2;
+
+    /**
+     * Number of ints of a course or member record.
+     */
+    private static final int ENTITY_WIDTH = 2 + MAX_NAME_LENGTH / 4;
+
+    /**
+     * Pager of the store, or null if the store is not opened.
+     */
+    private static RecordPager pager;
+
+    /**
+     * Directory of the store.
+     */
+    private static Path directory;
+
+    /**
+     * List of courses of the store.
+     */
+    private static PagedEntityList<Course> courses;
+
+    /**
+     * List of students of the store.
+     */
+    private static PagedEntityList<Student> students;
+
+    /**
+     * List of professors of the store.
+     */
+    private static PagedEntityList<Professor> professors;
+
+    /**
+     * Opens the store in a directory. A store saved by an earlier run is
+     * restored together with the counters of courses and members. A store
+     * which was not saved, for example because the run was killed, is
+     * cleared, since its pages may not match any saved state.
+     *
+     * @param directory Directory of the page files
+     * @param budget Maximum number of bytes of pages cached in memory
+     * @return true if a saved store was restored
+     * @throws IOException if the store cannot be opened
+     */
+    static boolean open(Path directory, long budget) throws IOException {
+        Path meta = directory.resolve(META_FILE);
+        boolean restored = Files.exists(meta);
+        ByteBuffer counters = ByteBuffer.allocate(20);
+        if (restored) {
+            byte[] bytes = Files.readAllBytes(meta);
+            if (bytes.length != counters.capacity()) {
+                throw new IOException("Store metadata is damaged");
+            }
+            counters.put(bytes).flip();
+            Files.delete(meta);
+        } else {
+            counters.putInt(Course.numberOfCourses).putInt(UniversityMember.numberOfMembers).putInt(0).putInt(0)
+                    .putInt(0).flip();
+        }
+        int[] widths = {ENTITY_WIDTH, ENTITY_WIDTH, 1, 1, 1,
+            1 + Course.CAPACITY, 1 + Student.MAX_ENROLMENT, 1 + Professor.MAX_LOAD};
+        pager = new RecordPager(directory, FILE_NAMES, widths, budget, !restored);
+        RelationStore.directory = directory;
+        Course.numberOfCourses = counters.getInt(0);
+        UniversityMember.numberOfMembers = counters.getInt(4);
+        courses = new PagedEntityList<>(pager, COURSE_ORDER, counters.getInt(8), RelationStore::course,
+                RelationStore::storeCourse);
+        students = new PagedEntityList<>(pager, STUDENT_ORDER, counters.getInt(12), id -> (Student) member(id),
+                student -> storeMember(student, STUDENT));
+        professors = new PagedEntityList<>(pager, PROFESSOR_ORDER, counters.getInt(16), id -> (Professor) member(id),
+                professor -> storeMember(professor, PROFESSOR));
+        return restored;
+    }
+
+    /**
+     * Writes all changed pages and saves the counters and list sizes, so
+     * the next run can restore the store.
+     *
+     * @throws IOException if the store cannot be saved
+     */
+    static void close() throws IOException {
+        pager.close();
+        ByteBuffer counters = ByteBuffer.allocate(20).putInt(Course.numberOfCourses)
+                .putInt(UniversityMember.numberOfMembers).putInt(courses.size()).putInt(students.size())
+                .putInt(professors.size());
+        Files.write(directory.resolve(META_FILE), counters.array());
+    }
+
+    /**
+     * Checks if a name can be stored. Names are checked while commands are
+     * validated, before a course or member takes an ID, so a rejected name
+     * does not leave a gap between IDs and list indexes.
+     *
+     * @param name Name to be stored
+     * @return true if the store is not opened or the name is short enough
+     */
+    static boolean canStore(String name) {
+        return pager == null || name.length() <= MAX_NAME_LENGTH;
+    }
+
+    /**
+     * Describes the statistics of the page cache.
+     *
+     * @return Statistics, or a note that the store is not opened
+     */
+    static String getStatistics() {
+        return pager == null ? "Paged store is not opened" : pager.getStatistics();
+    }
+
+    /**
+     * Getter for the list of courses of the store.
+     * @return courses
+     */
+    static List<Course> courses() {
+        return courses;
+    }
+
+    /**
+     * Getter for the list of students of the store.
+     * @return students
+     */
+    static List<Student> students() {
+        return students;
+    }
+
+    /**
+     * Getter for the list of professors of the store.
+     * @return professors
+     */
+    static List<Professor> professors() {
+        return professors;
+    }
+
+    /**
+     * Creates the list of students enrolled in a course.
+     *
+     * @param course Course owning the list
+     * @return List of students
+     */
+    static List<Student> roster(Course course) {
+        if (pager == null) {
+            return new ArrayList<>();
+        }
+        return new PagedRelationList<>(pager, ROSTER, course.getCourseID(), id -> (Student) member(id));
+    }
+
+    /**
+     * Creates the list of courses a student is enrolled in.
+     *
+     * @param student Student owning the list
+     * @return List of courses
+     */
+    static List<Course> enrollments(Student student) {
+        if (pager == null) {
+            return new ArrayList<>();
+        }
+        return new PagedRelationList<>(pager, ENROLLMENT, student.getMemberId(), RelationStore::course);
+    }
+
+    /**
+     * Creates the list of courses assigned to a professor.
+     *
+     * @param professor Professor owning the list
+     * @return List of courses
+     */
+    static List<Course> assignments(Professor professor) {
+        if (pager == null) {
+            return new ArrayList<>();
+        }
+        return new PagedRelationList<>(pager, TEACHING, professor.getMemberId(), RelationStore::course);
+    }
+
+    /**
+     * Restores a stored course.
+     *
+     * @param id ID of the course
+     * @return Course
+     */
+    private static Course course(int id) {
+        int[] record = pager.readRecord(COURSES, id);
+        return new Course(id, unpackName(record), CourseLevel.values()[record[0] - 1]);
+    }
+
+    /**
+     * Restores a stored student or professor.
+     *
+     * @param id ID of the member
+     * @return Student or professor
+     */
+    private static UniversityMember member(int id) {
+        int[] record = pager.readRecord(MEMBERS, id);
+        if (record[0] == STUDENT) {
+            return new Student(id, unpackName(record));
+        }
+        return new Professor(id, unpackName(record));
+    }
+
+    /**
+     * Stores the record of a course.
+     *
+     * @param course Course to be stored
+     * @return ID of the course
+     */
+    private static int storeCourse(Course course) {
+        int[] record = packName(course.getCourseName());
+        record[0] = course.getCourseLevel().ordinal() + 1;
+        pager.writeRecord(COURSES, course.getCourseID(), record);
+        return course.getCourseID();
+    }
+
+    /**
+     * Stores the record of a member.
+     *
+     * @param member Member to be stored
+     * @param kind STUDENT or PROFESSOR
+     * @return ID of the member
+     */
+    private static int storeMember(UniversityMember member, int kind) {
+        int[] record = packName(member.getMemberName());
+        record[0] = kind;
+        pager.writeRecord(MEMBERS, member.getMemberId(), record);
+        return member.getMemberId();
+    }
+
+    /**
+     * Creates a record holding a name, four characters per int.
+     *
+     * @param name Name to be stored
+     * @return Record with the name length and the name
+     */
+    private static int[] packName(String name) {
+        if (name.length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Name is too long to be stored");
+        }
+        int[] record = new int[ENTITY_WIDTH];
+        record[1] = name.length();
+        for (int i = 0; i < name.length(); i++) {
+            record[2 + i / 4] |= (name.charAt(i) & 0xFF) << (8 * (i % 4));
+        }
+        return record;
+    }
+
+    /**
+     * Reads the name held by a record.
+     *
+     * @param record Record with the name length and the name
+     * @return Name
+     */
+    private static String unpackName(int[] record) {
+        char[] name = new char[record[1]];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = (char) ((record[2 + i / 4] >>> (8 * (i % 4))) & 0xFF);
+        }
+        return new String(name);
+    }
+}
+
+/**
+ * PagedEntityList is a list view of the IDs of courses or members kept in
+ * a table of a RecordPager in the order they were added. Elements are
+ * restored when read and stored when added, and cannot be removed.
+ *
+ * @param <T> Type of the elements
+ */
+class PagedEntityList<T> extends AbstractList<T> {
+
+    /**
+     * Pager holding the table.
+     */
+    private final RecordPager pager;
+
+    /**
+     * Table of the IDs in the order of the list.
+     */
+    private final int order;
+
+    /**
+     * Function restoring an element by ID.
+     */
+    private final IntFunction<T> restorer;
+
+    /**
+     * Function storing an element and returning its ID.
+     */
+    private final ToIntFunction<T> storer;
+
+    /**
+     * Number of elements.
+     */
+    private int size;
+
+    /**
+     * Constructor of the PagedEntityList class.
+     *
+     * @param pager Pager holding the table
+     * @param order Table of the IDs in the order of the list
+     * @param size Number of elements already in the table
+     * @param restorer Function restoring an element by ID
+     * @param storer Function storing an element and returning its ID
+     */
+    PagedEntityList(RecordPager pager, int order, int size, IntFunction<T> restorer, ToIntFunction<T> storer) {
+        this.pager = pager;
+        this.order = order;
+        this.size = size;
+        this.restorer = restorer;
+        this.storer = storer;
+    }
+
+    @Override
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        return restorer.apply(pager.read(order, index, 0));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        if (index != size) {
+            throw new UnsupportedOperationException("Elements can only be appended");
+        }
+        pager.write(order, size, 0, storer.applyAsInt(element));
+        size++;
+    }
+
+    /**
+     * Returns the index of the last element with the given ID without
+     * restoring any element.
+     *
+     * @param id ID of the element
+     * @return Index of the element, or -1 if there is none
+     */
+    public int lastIndexOfId(int id) {
+        return pager.lastIndexOf(order, 0, id, size);
+    }
+}
+
+/**
+ * PagedRelationList is a list view of the IDs one owner holds in a
+ * relation of a RecordPager. A relation record is a count followed by a
+ * fixed number of ID slots. IDs are resolved to objects when read.
+ *
+ * @param <T> Type of the elements
+ */
+class PagedRelationList<T> extends AbstractList<T> {
+
+    /**
+     * Pager holding the relation.
+     */
+    private final RecordPager pager;
+
+    /**
+     * Relation of the list.
+     */
+    private final int relation;
+
+    /**
+     * ID of the owner of the list.
+     */
+    private final int owner;
+
+    /**
+     * Function resolving an ID to its object.
+     */
+    private final IntFunction<T> resolver;
+
+    /**
+     * Constructor of the PagedRelationList class.
+     *
+     * @param pager Pager holding the relation
+     * @param relation Relation of the list
+     * @param owner ID of the owner of the list
+     * @param resolver Function resolving an ID to its object
+     */
+    PagedRelationList(RecordPager pager, int relation, int owner, IntFunction<T> resolver) {
+        this.pager = pager;
+        this.relation = relation;
+        this.owner = owner;
+        this.resolver = resolver;
+    }
+
+    @Override
+    public T get(int index) {
+        Objects.checkIndex(index, size());
+        return resolver.apply(pager.read(relation, owner, 1 + index));
+    }
+
+    @Override
+    public int size() {
+        return pager.read(relation, owner, 0);
+    }
+
+    @Override
+    public void add(int index, T element) {
+        int count = size();
+        if (index != count) {
+            throw new UnsupportedOperationException("Elements can only be appended");
+        }
+        if (count == pager.getWidth(relation) - 1) {
+            throw new IllegalStateException("Record is full");
+        }
+        pager.write(relation, owner, 1 + count, idOf(element));
+        pager.write(relation, owner, 0, count + 1);
+    }
+
+    @Override
+    public T remove(int index) {
+        T element = get(index);
+        int count = size();
+        for (int slot = 1 + index; slot < count; slot++) {
+            pager.write(relation, owner, slot, pager.read(relation, owner, slot + 1));
+        }
+        pager.write(relation, owner, count, 0);
+        pager.write(relation, owner, 0, count - 1);
+        return element;
+    }
+
+    /**
+     * Returns the ID of an element.
+     *
+     * @param element Course or member
+     * @return ID of the element
+     */
+    private static int idOf(Object element) {
+        if (element instanceof Course) {
+            return ((Course) element).getCourseID();
+        }
+        return ((UniversityMember) element).getMemberId();
+    }
+}
+
+/**
+ * RecordPager keeps tables of fixed-size int records in pages on disk, one
+ * file per table. Record i of a table is at a fixed position of its file.
+ * Pages are loaded when first touched and kept in an LRU cache bounded by
+ * a number of bytes; evicted pages are written back if changed.
+ */
+class RecordPager {
+
+    /**
+     * Number of records in a page.
+     */
+    private static final int RECORDS_PER_PAGE = 64;
+
+    /**
+     * Number of ints of a record, indexed by table.
+     */
+    private final int[] widths;
+
+    /**
+     * Page files, indexed by table.
+     */
+    private final FileChannel[] channels;
+
+    /**
+     * Maximum number of bytes of pages cached in memory.
+     */
+    private final long budget;
+
+    /**
+     * Cached pages by key, from the least to the most recently used.
+     */
+    private final LinkedHashMap<Long, Page> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Buffer for reading and writing pages.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Number of bytes of the cached pages.
+     */
+    private long cachedBytes;
+
+    /**
+     * Number of page requests served from the cache.
+     */
+    private long hits;
+
+    /**
+     * Number of page requests served from disk.
+     */
+    private long misses;
+
+    /**
+     * Number of pages evicted from the cache.
+     */
+    private long evictions;
+
+    /**
+     * Number of evicted pages written back to disk.
+     */
+    private long writeBacks;
+
+    /**
+     * Constructor of the RecordPager class.
+     *
+     * @param directory Directory of the page files
+     * @param fileNames Names of the page files, indexed by table
+     * @param widths Number of ints of a record, indexed by table
+     * @param budget Maximum number of bytes of pages cached in memory
+     * @param clear Whether existing page files are cleared
+     * @throws IOException if the page files cannot be opened
+     */
+    RecordPager(Path directory, String[] fileNames, int[] widths, long budget, boolean clear) throws IOException {
+        this.widths = widths.clone();
+        this.budget = budget;
+        this.channels = new FileChannel[widths.length];
+        int maxPageBytes = 0;
+        for (int table = 0; table < widths.length; table++) {
+            channels[table] = clear
+                    ? FileChannel.open(directory.resolve(fileNames[table]), StandardOpenOption.CREATE,
+                            StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                    : FileChannel.open(directory.resolve(fileNames[table]), StandardOpenOption.CREATE,
+                            StandardOpenOption.READ, StandardOpenOption.WRITE);
+            maxPageBytes = Math.max(maxPageBytes, pageBytes(table));
+        }
+        this.buffer = ByteBuffer.allocateDirect(maxPageBytes);
+    }
+
+    /**
+     * Getter for the number of ints of a record of a table.
+     *
+     * @param table Table
+     * @return Number of ints
+     */
+    public int getWidth(int table) {
+        return widths[table];
+    }
+
+    /**
+     * Reads a field of a record.
+     *
+     * @param table Table
+     * @param record Index of the record
+     * @param field Index of the field
+     * @return Value of the field
+     */
+    public synchronized int read(int table, int record, int field) {
+        return page(table, record).data[recordStart(table, record) + field];
+    }
+
+    /**
+     * Writes a field of a record.
+     *
+     * @param table Table
+     * @param record Index of the record
+     * @param field Index of the field
+     * @param value Value of the field
+     */
+    public synchronized void write(int table, int record, int field, int value) {
+        Page page = page(table, record);
+        page.data[recordStart(table, record) + field] = value;
+        page.dirty = true;
+    }
+
+    /**
+     * Reads all fields of a record.
+     *
+     * @param table Table
+     * @param record Index of the record
+     * @return Copy of the fields
+     */
+    public synchronized int[] readRecord(int table, int record) {
+        int start = recordStart(table, record);
+        return Arrays.copyOfRange(page(table, record).data, start, start + widths[table]);
+    }
+
+    /**
+     * Writes all fields of a record.
+     *
+     * @param table Table
+     * @param record Index of the record
+     * @param fields Fields of the record
+     */
+    public synchronized void writeRecord(int table, int record, int[] fields) {
+        Page page = page(table, record);
+        System.arraycopy(fields, 0, page.data, recordStart(table, record), widths[table]);
+        page.dirty = true;
+    }
+
+    /**
+     * Returns the index of the last of the first records of a table
+     * whose field has the given value, touching each page once.
+     *
+     * @param table Table
+     * @param field Index of the field
+     * @param value Value to be found
+     * @param records Number of records to be searched
+     * @return Index of the record, or -1 if there is none
+     */
+    public synchronized int lastIndexOf(int table, int field, int value, int records) {
+        int record = records - 1;
+        while (record >= 0) {
+            int[] data = page(table, record).data;
+            int first = record - record % RECORDS_PER_PAGE;
+            for (; record >= first; record--) {
+                if (data[recordStart(table, record) + field] == value) {
+                    return record;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes all changed cached pages, forces them to disk and closes the files.
+     *
+     * @throws IOException if a page file cannot be written or closed
+     */
+    public synchronized void close() throws IOException {
+        try {
+            for (Map.Entry<Long, Page> entry : cache.entrySet()) {
+                if (entry.getValue().dirty) {
+                    write(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+        for (FileChannel channel : channels) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns the share of page requests served from the cache.
+     *
+     * @return Hit rate from 0 to 1
+     */
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * Describes the statistics of the cache.
+     *
+     * @return Statistics
+     */
+    public synchronized String getStatistics() {
+        return String.format("Page cache: %d hits, %d misses, hit rate %.2f%%, %d evictions, %d write-backs, "
+                + "%d of %d bytes cached", hits, misses, getHitRate() * 100, evictions, writeBacks, cachedBytes, budget);
+    }
+
+    /**
+     * Returns the page holding a record, loading it if needed.
+     *
+     * @param table Table
+     * @param record Index of the record
+     * @return Page
+     */
+    private Page page(int table, int record) {
+        long key = (long) table << 32 | record / RECORDS_PER_PAGE;
+        Page page = cache.get(key);
+        if (page != null) {
+            hits++;
+            return page;
+        }
+        misses++;
+        page = read(key);
+        cache.put(key, page);
+        cachedBytes += page.data.length * 4L;
+        evict();
+        return page;
+    }
+
+    /**
+     * Evicts the least recently used pages while the cache is over budget.
+     * The most recently used page is always kept.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Long, Page>> iterator = cache.entrySet().iterator();
+        while (cachedBytes > budget && cache.size() > 1) {
+            Map.Entry<Long, Page> eldest = iterator.next();
+            iterator.remove();
+            cachedBytes -= eldest.getValue().data.length * 4L;
+            evictions++;
+            if (eldest.getValue().dirty) {
+                write(eldest.getKey(), eldest.getValue());
+                writeBacks++;
+            }
+        }
+    }
+
+    /**
+     * Reads a page from disk. Parts beyond the end of the file are zero.
+     *
+     * @param key Key of the page
+     * @return Page
+     */
+    private Page read(long key) {
+        int table = (int) (key >>> 32);
+        Page page = new Page(new int[pageBytes(table) / 4]);
+        buffer.clear().limit(pageBytes(table));
+        try {
+            while (buffer.hasRemaining()) {
+                if (channels[table].read(buffer, offset(key) + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        buffer.flip();
+        buffer.asIntBuffer().get(page.data, 0, buffer.remaining() / 4);
+        return page;
+    }
+
+    /**
+     * Writes a page to disk and marks it unchanged.
+     *
+     * @param key Key of the page
+     * @param page Page
+     */
+    private void write(long key, Page page) {
+        int table = (int) (key >>> 32);
+        buffer.clear();
+        buffer.asIntBuffer().put(page.data);
+        buffer.limit(pageBytes(table));
+        try {
+            while (buffer.hasRemaining()) {
+                channels[table].write(buffer, offset(key) + buffer.position());
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        page.dirty = false;
+    }
+
+    /**
+     * Returns the number of bytes of a page of a table.
+     *
+     * @param table Table
+     * @return Number of bytes
+     */
+    private int pageBytes(int table) {
+        return RECORDS_PER_PAGE * widths[table] * 4;
+    }
+
+    /**
+     * Returns the position of a page in its file.
+     *
+     * @param key Key of the page
+     * @return Position in bytes
+     */
+    private long offset(long key) {
+        return (key & 0xFFFFFFFFL) * pageBytes((int) (key >>> 32));
+    }
+
+    /**
+     * Returns the index of the first field of a record in its page.
+     *
+     * @param table Table
+     * @param record Index of the record
+     * @return Index in the page
+     */
+    private int recordStart(int table, int record) {
+        return record % RECORDS_PER_PAGE * widths[table];
+    }
+
+    /**
+     * Page class holds the records of a page and whether they were changed.
+     */
+    private static class Page {
+
+        /**
+         * Records of the page.
+         */
+        private final int[] data;
+
+        /**
+         * Whether the records were changed since the page was read or written.
+         */
+        private boolean dirty;
+
+        /**
+         * Constructor of the Page class.
+         *
+         * @param data Records of the page
+         */
+        Page(int[] data) {
+            this.data = data;
+        }
+    }
+}
+
+/**
+ * TermArchive holds the history of the terms appended to an archive file
+ * in columns of primitive arrays and computes count aggregates over them.
+ * Each term is a segment of the file, written once at the end of the term:
+ * a dictionary of names, a dictionary of course levels, a course table of
+ * IDs, name codes and level codes, a member table of IDs and name codes and
+ * the enrollment and teaching rows as indexes into these tables. When the
+ * archive is loaded, the rows of each term stay indexes into the tables of
+ * the term, and the tables are translated to dictionaries shared by all
+ * terms. Courses are joined across terms by name, which is unique within a
+ * term. Professors are joined by ID and name, since names are not unique;
+ * IDs restart with every run, so a professor is joined across runs only if
+ * created with the same ID.
+ */
+class TermArchive {
+
+    /**
+     * Minimum number of rows one scan thread counts.
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Archive loaded last, or null. Only one archive is kept, so the heap
+     * holds the columns of at most one archive between commands. Commands
+     * are applied one at a time, so archives are never loaded by two
+     * threads at once.
+     */
+    private static TermArchive cached;
+
+    /**
+     * Absolute path of the archive file.
+     */
+    private final Path path;
+
+    /**
+     * Names of the archived courses, indexed by code.
+     */
+    private final List<String> courseNames = new ArrayList<>();
+
+    /**
+     * Codes of the archived courses by name.
+     */
+    private final Map<String, Integer> courseCodes = new HashMap<>();
+
+    /**
+     * Keys "ID,name" of the archived professors, indexed by code.
+     */
+    private final List<String> professorKeys = new ArrayList<>();
+
+    /**
+     * Codes of the archived professors by key.
+     */
+    private final Map<String, Integer> professorCodes = new HashMap<>();
+
+    /**
+     * Names of the archived course levels, indexed by code.
+     */
+    private final List<String> levels = new ArrayList<>();
+
+    /**
+     * Codes of the archived course levels by name.
+     */
+    private final Map<String, Integer> levelCodes = new HashMap<>();
+
+    /**
+     * Course of every enrollment as an index into the courses of its term, per term.
+     */
+    private final List<int[]> enrollmentCourses = new ArrayList<>();
+
+    /**
+     * Professor of every teaching assignment as an index into the professors
+     * of its term, per term.
+     */
+    private final List<int[]> teachingProfessors = new ArrayList<>();
+
+    /**
+     * Course code by index of the course in its term, per term.
+     */
+    private final List<int[]> courseCodesOfTerm = new ArrayList<>();
+
+    /**
+     * Level code by index of the course in its term, per term.
+     */
+    private final List<int[]> levelCodesOfTerm = new ArrayList<>();
+
+    /**
+     * Professor code by index of the professor in its term, per term.
+     */
+    private final List<int[]> professorCodesOfTerm = new ArrayList<>();
+
+    /**
+     * Number of bytes of the file loaded so far.
+     */
+    private long loadedBytes;
+
+    /**
+     * Position of the last loaded segment, or -1 if none is loaded.
+     */
+    private long lastSegmentStart = -1;
+
+    /**
+     * CRC-32 of the content of the last loaded segment.
+     */
+    private long lastSegmentChecksum;
+
+    /**
+     * Constructor of the TermArchive class.
+     *
+     * @param path Absolute path of the archive file
+     */
+    private TermArchive(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Appends the courses, enrollments and teaching assignments of the
+     * current term to an archive file, creating the file if needed.
+     *
+     * @param path Path of the archive
+     * @param courses List of courses
+     * @param students List of students
+     * @param professors List of professors
+     * @throws IOException if the archive cannot be read or written
+     */
+    static void append(Path path, List<Course> courses, List<Student> students, List<Professor> professors)
+            throws IOException {
+        Map<String, Integer> names = new LinkedHashMap<>();
+        Map<Integer, Integer> courseIndexes = new HashMap<>();
+        int[] courseIds = new int[courses.size()];
+        int[] courseNameCodes = new int[courses.size()];
+        byte[] courseLevelCodes = new byte[courses.size()];
+        int enrollments = 0;
+        for (int i = 0; i < courses.size(); i++) {
+            Course course = courses.get(i);
+            courseIndexes.put(course.getCourseID(), i);
+            courseIds[i] = course.getCourseID();
+            courseNameCodes[i] = encode(names, course.getCourseName());
+            courseLevelCodes[i] = (byte) course.getCourseLevel().ordinal();
+            enrollments += course.getEnrolledStudents().size();
+        }
+
+        int members = students.size() + professors.size();
+        Map<Integer, Integer> memberIndexes = new HashMap<>();
+        int[] memberIds = new int[members];
+        int[] memberNameCodes = new int[members];
+        int index = 0;
+        for (UniversityMember member : students) {
+            memberIndexes.put(member.getMemberId(), index);
+            memberIds[index] = member.getMemberId();
+            memberNameCodes[index++] = encode(names, member.getMemberName());
+        }
+        for (UniversityMember member : professors) {
+            memberIndexes.put(member.getMemberId(), index);
+            memberIds[index] = member.getMemberId();
+            memberNameCodes[index++] = encode(names, member.getMemberName());
+        }
+
+        int[] enrollmentCourses = new int[enrollments];
+        int[] enrollmentStudents = new int[enrollments];
+        int row = 0;
+        for (int i = 0; i < courses.size(); i++) {
+            for (Student student : courses.get(i).getEnrolledStudents()) {
+                enrollmentCourses[row] = i;
+                enrollmentStudents[row++] = memberIndexes.get(student.getMemberId());
+            }
+        }
+        int assignments = 0;
+        for (Professor professor : professors) {
+            assignments += professor.getAssignedCourses().size();
+        }
+        int[] teachingCourses = new int[assignments];
+        int[] teachingProfessors = new int[assignments];
+        row = 0;
+        for (Professor professor : professors) {
+            for (Course course : professor.getAssignedCourses()) {
+                teachingCourses[row] = courseIndexes.get(course.getCourseID());
+                teachingProfessors[row++] = memberIndexes.get(professor.getMemberId());
+            }
+        }
+
+        List<byte[]> nameBytes = new ArrayList<>();
+        for (String name : names.keySet()) {
+            nameBytes.add(name.getBytes(StandardCharsets.UTF_8));
+        }
+        List<byte[]> levelBytes = new ArrayList<>();
+        for (CourseLevel level : CourseLevel.values()) {
+            levelBytes.add(level.name().getBytes(StandardCharsets.UTF_8));
+        }
+        long size = 4L + stringsSize(nameBytes) + stringsSize(levelBytes)
+                + 4L + 9L * courses.size() + 4L + 8L * members + 4L + 8L * enrollments + 4L + 8L * assignments;
+        if (size > Integer.MAX_VALUE - 4) {
+            throw new IOException("Term is too large to be archived");
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            int term = countSegments(channel) + 1;
+            ByteBuffer segment = ByteBuffer.allocate((int) size + 4);
+            segment.putInt((int) size).putInt(term);
+            putStrings(segment, nameBytes);
+            putStrings(segment, levelBytes);
+            segment.putInt(courses.size());
+            putInts(segment, courseIds);
+            putInts(segment, courseNameCodes);
+            segment.put(courseLevelCodes);
+            segment.putInt(members);
+            putInts(segment, memberIds);
+            putInts(segment, memberNameCodes);
+            segment.putInt(enrollments);
+            putInts(segment, enrollmentCourses);
+            putInts(segment, enrollmentStudents);
+            segment.putInt(assignments);
+            putInts(segment, teachingCourses);
+            putInts(segment, teachingProfessors);
+            segment.flip();
+            long position = channel.size();
+            while (segment.hasRemaining()) {
+                position += channel.write(segment, position);
+            }
+        }
+    }
+
+    /**
+     * Loads the terms of an archive file. If the archive loaded last is the
+     * same file and its last loaded segment is still in place, only the
+     * terms appended since are read. Otherwise the file was replaced or
+     * truncated, so it is loaded again.
+     *
+     * @param path Path of the archive
+     * @return Archive
+     * @throws IOException if the archive cannot be read or is truncated
+     */
+    static TermArchive load(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            TermArchive archive = cached;
+            if (archive == null || !archive.path.equals(key) || !archive.isPrefixOf(channel)) {
+                cached = null;
+                archive = new TermArchive(key);
+                cached = archive;
+            }
+            CRC32 checksum = new CRC32();
+            while (archive.loadedBytes < channel.size()) {
+                int size = readSize(channel, archive.loadedBytes);
+                ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, archive.loadedBytes + 4, size);
+                checksum.reset();
+                checksum.update(segment.duplicate());
+                archive.readSegment(segment);
+                archive.lastSegmentStart = archive.loadedBytes;
+                archive.lastSegmentChecksum = checksum.getValue();
+                archive.loadedBytes += 4L + size;
+            }
+            return archive;
+        }
+    }
+
+    /**
+     * Checks if the loaded part of the archive is still at the start of the
+     * file, by comparing the size and the checksum of the last loaded
+     * segment. Archive files are only ever appended to, so a file with a
+     * different segment there was replaced.
+     *
+     * @param channel Channel of the archive
+     * @return true if the loaded terms can be kept
+     * @throws IOException if the archive cannot be read
+     */
+    private boolean isPrefixOf(FileChannel channel) throws IOException {
+        if (channel.size() < loadedBytes) {
+            return false;
+        }
+        if (lastSegmentStart < 0) {
+            return true;
+        }
+        int size;
+        try {
+            size = readSize(channel, lastSegmentStart);
+        } catch (IOException exception) {
+            return false;
+        }
+        if (lastSegmentStart + 4L + size != loadedBytes) {
+            return false;
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, lastSegmentStart + 4, size));
+        return checksum.getValue() == lastSegmentChecksum;
+    }
+
+    /**
+     * Reports the enrollments of every course in every term.
+     *
+     * @return Lines "term,course_name,count"
+     */
+    public String reportDemand() {
+        int[][] counts = new int[enrollmentCourses.size()][];
+        for (int term = 0; term < counts.length; term++) {
+            counts[term] = countBy(enrollmentCourses.get(term), null, courseCodesOfTerm.get(term).length);
+        }
+        return report(counts, courseCodesOfTerm, courseNames);
+    }
+
+    /**
+     * Reports the courses assigned to every professor in every term.
+     *
+     * @return Lines "term,professor_id,professor_name,count"
+     */
+    public String reportLoad() {
+        int[][] counts = new int[teachingProfessors.size()][];
+        for (int term = 0; term < counts.length; term++) {
+            counts[term] = countBy(teachingProfessors.get(term), null, professorCodesOfTerm.get(term).length);
+        }
+        return report(counts, professorCodesOfTerm, professorKeys);
+    }
+
+    /**
+     * Reports the enrollments in courses of every level in every term.
+     *
+     * @return Lines "term,level,count"
+     */
+    public String reportLevels() {
+        int[][] counts = new int[enrollmentCourses.size()][];
+        for (int term = 0; term < counts.length; term++) {
+            counts[term] = countBy(enrollmentCourses.get(term), levelCodesOfTerm.get(term), levels.size());
+        }
+        return report(counts, null, levels);
+    }
+
+    /**
+     * Formats counts as lines "term,key,count", skipping zero counts.
+     * Terms are numbered from 1.
+     *
+     * @param counts Counts indexed by term and group
+     * @param codes Code of the key by group, per term, or null if groups are codes
+     * @param keys Keys indexed by code
+     * @return Lines of the report
+     */
+    private static String report(int[][] counts, List<int[]> codes, List<String> keys) {
+        StringBuilder report = new StringBuilder();
+        for (int term = 0; term < counts.length; term++) {
+            for (int group = 0; group < counts[term].length; group++) {
+                if (counts[term][group] == 0) {
+                    continue;
+                }
+                if (report.length() > 0) {
+                    report.append(System.lineSeparator());
+                }
+                int code = codes == null ? group : codes.get(term)[group];
+                report.append(term + 1).append(',').append(keys.get(code)).append(',').append(counts[term][group]);
+            }
+        }
+        return report.length() == 0 ? "No records found" : report.toString();
+    }
+
+    /**
+     * Counts the rows of a term by group. The rows are split into one range
+     * per available processor, but at least CHUNK_SIZE rows each, which are
+     * counted by their own threads into their own counts, and the counts are
+     * summed at the end.
+     *
+     * @param values Values of the rows
+     * @param groupOf Group by value, or null if values are groups
+     * @param groups Number of groups of the term
+     * @return Counts indexed by group
+     */
+    private static int[] countBy(int[] values, int[] groupOf, int groups) {
+        int workers = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), values.length / CHUNK_SIZE));
+        if (workers == 1) {
+            return scan(values, groupOf, groups, 0, values.length);
+        }
+        int[][] partials = new int[workers][];
+        Thread[] threads = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            int worker = i;
+            int from = (int) ((long) values.length * worker / workers);
+            int to = (int) ((long) values.length * (worker + 1) / workers);
+            threads[i] = new Thread(() -> partials[worker] = scan(values, groupOf, groups, from, to), "scan-" + worker);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Scan is interrupted", exception);
+            }
+        }
+        int[] counts = partials[0];
+        for (int worker = 1; worker < workers; worker++) {
+            int[] partial = partials[worker];
+            for (int group = 0; group < groups; group++) {
+                counts[group] += partial[group];
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Counts a range of rows by group.
+     *
+     * @param values Values of the rows
+     * @param groupOf Group by value, or null if values are groups
+     * @param groups Number of groups
+     * @param from First row
+     * @param to Row after the last
+     * @return Counts indexed by group
+     */
+    private static int[] scan(int[] values, int[] groupOf, int groups, int from, int to) {
+        int[] counts = new int[groups];
+        if (groupOf == null) {
+            for (int row = from; row < to; row++) {
+                counts[values[row]]++;
+            }
+        } else {
+            for (int row = from; row < to; row++) {
+                counts[groupOf[values[row]]]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Reads a segment, translating its tables to the shared dictionaries.
+     * Enrollment rows are kept as read, and teaching rows are translated
+     * to indexes among the professors of the term.
+     *
+     * @param segment Content of the segment after its size
+     */
+    private void readSegment(ByteBuffer segment) {
+        segment.getInt();
+        String[] names = getStrings(segment);
+        String[] levelNames = getStrings(segment);
+        int courseCount = segment.getInt();
+        // Course IDs restart with every run, so terms are joined by course names.
+        skipInts(segment, courseCount);
+        int[] courseNameCodes = getInts(segment, courseCount);
+        byte[] courseLevelCodes = new byte[courseCount];
+        segment.get(courseLevelCodes);
+        int memberCount = segment.getInt();
+        int[] memberIds = getInts(segment, memberCount);
+        int[] memberNameCodes = getInts(segment, memberCount);
+        int enrollments = segment.getInt();
+        int[] enrolledCourses = getInts(segment, enrollments);
+        // Enrolled students are not reported yet.
+        skipInts(segment, enrollments);
+        int assignments = segment.getInt();
+        // Courses of teaching assignments are not reported yet.
+        skipInts(segment, assignments);
+        int[] assignedProfessors = getInts(segment, assignments);
+
+        int[] levelCodeOf = new int[levelNames.length];
+        for (int i = 0; i < levelNames.length; i++) {
+            levelCodeOf[i] = encode(levels, levelCodes, levelNames[i]);
+        }
+        int[] courseCodeOf = new int[courseCount];
+        int[] levelOfCourse = new int[courseCount];
+        for (int i = 0; i < courseCount; i++) {
+            courseCodeOf[i] = encode(courseNames, courseCodes, names[courseNameCodes[i]]);
+            levelOfCourse[i] = levelCodeOf[courseLevelCodes[i]];
+        }
+        int[] professorOfMember = new int[memberCount];
+        Arrays.fill(professorOfMember, -1);
+        int[] professorCodeOf = new int[memberCount];
+        int professors = 0;
+        for (int row = 0; row < assignments; row++) {
+            int member = assignedProfessors[row];
+            if (professorOfMember[member] < 0) {
+                professorCodeOf[professors] = encode(professorKeys, professorCodes,
+                        memberIds[member] + "," + names[memberNameCodes[member]]);
+                professorOfMember[member] = professors++;
+            }
+            assignedProfessors[row] = professorOfMember[member];
+        }
+        enrollmentCourses.add(enrolledCourses);
+        teachingProfessors.add(assignedProfessors);
+        courseCodesOfTerm.add(courseCodeOf);
+        levelCodesOfTerm.add(levelOfCourse);
+        professorCodesOfTerm.add(Arrays.copyOf(professorCodeOf, professors));
+    }
+
+    /**
+     * Returns the code of a name in a dictionary being written, adding it if needed.
+     *
+     * @param dictionary Codes by name
+     * @param name Name to be encoded
+     * @return Code of the name
+     */
+    private static int encode(Map<String, Integer> dictionary, String name) {
+        return dictionary.computeIfAbsent(name, key -> dictionary.size());
+    }
+
+    /**
+     * Returns the code of a name in a shared dictionary, adding it if needed.
+     *
+     * @param names Names indexed by code
+     * @param codes Codes by name
+     * @param name Name to be encoded
+     * @return Code of the name
+     */
+    private static int encode(List<String> names, Map<String, Integer> codes, String name) {
+        Integer code = codes.get(name);
+        if (code == null) {
+            code = names.size();
+            names.add(name);
+            codes.put(name, code);
+        }
+        return code;
+    }
+
+    /**
+     * Counts the segments of an archive file.
+     *
+     * @param channel Channel of the archive
+     * @return Number of segments
+     * @throws IOException if the archive cannot be read or is truncated
+     */
+    private static int countSegments(FileChannel channel) throws IOException {
+        int segments = 0;
+        for (long position = 0; position < channel.size(); position += 4L + readSize(channel, position)) {
+            segments++;
+        }
+        return segments;
+    }
+
+    /**
+     * Reads the size of the segment at a position and checks that the
+     * segment fits in the file.
+     *
+     * @param channel Channel of the archive
+     * @param position Position of the segment
+     * @return Size of the segment after its size
+     * @throws IOException if the archive cannot be read or is truncated
+     */
+    private static int readSize(FileChannel channel, long position) throws IOException {
+        ByteBuffer size = ByteBuffer.allocate(4);
+        while (size.hasRemaining()) {
+            if (channel.read(size, position + size.position()) < 0) {
+                throw new IOException("Archive is truncated");
+            }
+        }
+        int segmentSize = size.getInt(0);
+        if (segmentSize < 0 || position + 4 + segmentSize > channel.size()) {
+            throw new IOException("Archive is truncated");
+        }
+        return segmentSize;
+    }
+
+    /**
+     * Returns the number of bytes of a list of strings.
+     *
+     * @param strings Encoded strings
+     * @return Number of bytes
+     */
+    private static long stringsSize(List<byte[]> strings) {
+        long size = 4;
+        for (byte[] string : strings) {
+            size += 4 + string.length;
+        }
+        return size;
+    }
+
+    /**
+     * Puts a list of strings as a count followed by length-prefixed bytes.
+     *
+     * @param buffer Buffer of the segment
+     * @param strings Encoded strings
+     */
+    private static void putStrings(ByteBuffer buffer, List<byte[]> strings) {
+        buffer.putInt(strings.size());
+        for (byte[] string : strings) {
+            buffer.putInt(string.length).put(string);
+        }
+    }
+
+    /**
+     * Gets a list of strings put by putStrings.
+     *
+     * @param buffer Buffer of the segment
+     * @return Strings
+     */
+    private static String[] getStrings(ByteBuffer buffer) {
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] string = new byte[buffer.getInt()];
+            buffer.get(string);
+            strings[i] = new String(string, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    /**
+     * Puts a column of ints.
+     *
+     * @param buffer Buffer of the segment
+     * @param values Column
+     */
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + 4 * values.length);
+    }
+
+    /**
+     * Gets a column of ints.
+     *
+     * @param buffer Buffer of the segment
+     * @param count Number of values
+     * @return Column
+     */
+    private static int[] getInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        IntBuffer column = buffer.asIntBuffer();
+        column.get(values);
+        buffer.position(buffer.position() + 4 * count);
+        return values;
+    }
+
+    /**
+     * Skips a column of ints without reading it.
+     *
+     * @param buffer Buffer of the segment
+     * @param count Number of values
+     */
+    private static void skipInts(ByteBuffer buffer, int count) {
+        if (count < 0 || count > buffer.remaining() / 4) {
+            throw new BufferUnderflowException();
+        }
+        buffer.position(buffer.position() + 4 * count);
+    }
+}
+
+/**
+ * This class compares the throughput of the sequential loop and of the
+ * CommandPipeline. Both run the same generated commands from memory into
+ * memory with the same buffered input and output, so the difference comes
+ * from running the stages on separate threads.
+ *
+ * @see UniversityCourseManagementSystem#runSequential(InputStream, PrintStream, List, List, List)
+ * @see CommandPipeline
+ */
+class PipelineBenchmark {
+
+    /**
+     * Number of rounds of enroll, drop, teach and exempt commands by default.
+     */
+    private static final int DEFAULT_ROUNDS = 200_000;
+
+    /**
+     * Number of times each mode is run. The first runs warm up the JVM.
+     */
+    private static final int RUNS = 5;
+
+    /**
+     * This method is the entry point to the benchmark.
+     *
+     * @param args Optional number of rounds of commands
+     */
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+        System.out.println("Processors: " + Runtime.getRuntime().availableProcessors());
+        for (int run = 1; run <= RUNS; run++) {
+            Result sequential = run(false, rounds);
+            Result pipelined = run(true, rounds);
+            if (!Arrays.equals(sequential.output, pipelined.output)) {
+                throw new IllegalStateException("Outputs of the modes differ");
+            }
+            System.out.printf("Run %d: %d commands, sequential %.0f commands/s, pipelined %.0f commands/s, "
+                            + "speedup %.2f%n", run, sequential.commands, sequential.throughput(),
+                    pipelined.throughput(), pipelined.throughput() / sequential.throughput());
+        }
+    }
+
+    /**
+     * Runs the generated commands on a registry filled with the initial data.
+     *
+     * @param pipelined Whether to run the commands through a CommandPipeline
+     * @param rounds Number of rounds of commands
+     * @return Result of the run
+     */
+    private static Result run(boolean pipelined, int rounds) {
+        List<Course> courses = new ArrayList<>();
+        List<Student> students = new ArrayList<>();
+        List<Professor> professors = new ArrayList<>();
+        UniversityCourseManagementSystem.fillInitialData(courses, students, professors);
+        StringBuilder input = new StringBuilder();
+        int commands = generate(input, rounds, courses.size() + 1, UniversityMember.numberOfMembers);
+        ByteArrayInputStream in = new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes);
+
+        long start = System.nanoTime();
+        if (pipelined) {
+            new CommandPipeline(courses, students, professors).run(in, out);
+        } else {
+            UniversityCourseManagementSystem.runSequential(in, out, courses, students, professors);
+        }
+        return new Result(commands, System.nanoTime() - start, bytes.toByteArray());
+    }
+
+    /**
+     * Generates commands which all succeed: a new course, student and
+     * professor, then rounds of enroll, drop, teach and exempt on them,
+     * with a new student added every 50 rounds.
+     *
+     * @param input Builder of the commands
+     * @param rounds Number of rounds
+     * @param courseId ID the new course gets in the commands
+     * @param lastMemberId ID of the last created member
+     * @return Number of commands
+     */
+    private static int generate(StringBuilder input, int rounds, int courseId, int lastMemberId) {
+        int studentId = lastMemberId + 1;
+        int professorId = lastMemberId + 2;
+        input.append("course\ndata_science\nbachelor\nstudent\ndave\nprofessor\neve\n");
+        int commands = 3;
+        for (int i = 0; i < rounds; i++) {
+            input.append("enroll\n").append(studentId).append('\n').append(courseId).append('\n');
+            input.append("drop\n").append(studentId).append('\n').append(courseId).append('\n');
+            input.append("teach\n").append(professorId).append('\n').append(courseId).append('\n');
+            input.append("exempt\n").append(professorId).append('\n').append(courseId).append('\n');
+            commands += 4;
+            if (i % 50 == 0) {
+                input.append("student\nstud").append(name(i)).append('\n');
+                commands++;
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Returns a distinct alphabetical name for a number.
+     *
+     * @param number Number to be named
+     * @return Name of lowercase letters
+     */
+    static String name(int number) {
+        StringBuilder name = new StringBuilder();
+        for (int rest = number + 1; rest > 0; rest = (rest - 1) / 26) {
+            name.append((char) ('a' + (rest - 1) % 26));
+        }
+        return name.toString();
+    }
+
+    /**
+     * Result class holds the number of commands, the time and the output of a run.
+     */
+    private static class Result {
+
+        /**
+         * Number of commands run.
+         */
+        private final int commands;
+
+        /**
+         * Time of the run in nanoseconds.
+         */
+        private final long nanos;
+
+        /**
+         * Printed messages.
+         */
+        private final byte[] output;
+
+        /**
+         * Constructor of the Result class.
+         *
+         * @param commands Number of commands run
+         * @param nanos Time of the run in nanoseconds
+         * @param output Printed messages
+         */
+        Result(int commands, long nanos, byte[] output) {
+            this.commands = commands;
+            this.nanos = nanos;
+            this.output = output;
+        }
+
+        /**
+         * Returns the number of commands run per second.
+         *
+         * @return Throughput
+         */
+        double throughput() {
+            return commands / (nanos / 1e9);
+        }
+    }
+}
+
+/**
+ * ExportBenchmark measures how fast RegistryExporter writes registries of
+ * several sizes in each format and number of shards. Every course is full
+ * and every professor has a complete load. The throughput is the size of
+ * the written files divided by the best time of a few runs.
+ * Run it as "java ExportBenchmark [maxShards [courses...]]".
+ */
+class ExportBenchmark {
+
+    /**
+     * Numbers of courses of the registries by default.
+     */
+    private static final int[] DEFAULT_SIZES = {10_000, 100_000, 1_000_000};
+
+    /**
+     * Largest number of shards measured by default.
+     */
+    private static final int DEFAULT_MAX_SHARDS = 4;
+
+    /**
+     * Number of times each export is run. The best time is reported.
+     */
+    private static final int RUNS = 3;
+
+    /**
+     * This method is the entry point to the benchmark.
+     *
+     * @param args Optional maximum number of shards followed by numbers of courses
+     * @throws IOException if a file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int maxShards = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAX_SHARDS;
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 1) {
+            sizes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.println("Processors: " + Runtime.getRuntime().availableProcessors());
+        Path directory = Files.createTempDirectory("export-benchmark");
+        try {
+            for (int size : sizes) {
+                List<Course> courses = new ArrayList<>();
+                List<Professor> professors = new ArrayList<>();
+                fill(courses, professors, size);
+                System.out.printf("Registry of %d courses, %d enrollments, %d assignments%n", size,
+                        size * Course.CAPACITY, professors.size() * Professor.MAX_LOAD);
+                for (ExportFormat format : ExportFormat.values()) {
+                    for (int shards = 1; shards <= maxShards; shards++) {
+                        measure(courses, professors, format, shards, directory.resolve("registry"));
+                    }
+                }
+            }
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Fills a registry. Student i is enrolled in courses i, i + 1 and i + 2,
+     * so every course has a full roster, and professor j teaches the
+     * courses following 2j.
+     *
+     * @param courses List of courses
+     * @param professors List of professors
+     * @param size Number of courses
+     */
+    private static void fill(List<Course> courses, List<Professor> professors, int size) {
+        for (int i = 0; i < size; i++) {
+            courses.add(new Course("course" + PipelineBenchmark.name(i), CourseLevel.BACHELOR));
+        }
+        for (int i = 0; i < size; i++) {
+            Student student = new Student("student" + PipelineBenchmark.name(i));
+            for (int j = 0; j < Student.MAX_ENROLMENT; j++) {
+                student.enroll(courses.get((i + j) % size));
+            }
+        }
+        for (int i = 0; i < size / Professor.MAX_LOAD; i++) {
+            Professor professor = new Professor("professor" + PipelineBenchmark.name(i));
+            for (int j = 0; j < Professor.MAX_LOAD; j++) {
+                professor.teach(courses.get(i * Professor.MAX_LOAD + j));
+            }
+            professors.add(professor);
+        }
+    }
+
+    /**
+     * Runs an export several times, prints its best throughput and
+     * deletes the written files.
+     *
+     * @param courses List of courses
+     * @param professors List of professors
+     * @param format Format of the files
+     * @param shards Number of shards
+     * @param path Path of the exported file
+     * @throws IOException if a file cannot be written
+     */
+    private static void measure(List<Course> courses, List<Professor> professors, ExportFormat format, int shards,
+                                Path path) throws IOException {
+        RegistryExporter exporter = new RegistryExporter(format);
+        long best = Long.MAX_VALUE;
+        long bytes = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            exporter.export(courses, professors, path, shards);
+            best = Math.min(best, System.nanoTime() - start);
+            bytes = 0;
+            for (int shard = 0; shard < shards; shard++) {
+                Path file = shards == 1 ? path : path.resolveSibling(path.getFileName() + "." + shard);
+                bytes += Files.size(file);
+                Files.delete(file);
+            }
+        }
+        System.out.printf("  %s, %d shards: %.1f MB in %.1f ms, %.0f MB/s%n", format, shards, bytes / 1e6,
+                best / 1e6, bytes / 1e6 / (best / 1e9));
+    }
+}